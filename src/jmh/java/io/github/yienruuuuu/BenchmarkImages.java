@@ -0,0 +1,75 @@
+package io.github.yienruuuuu;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * 基準測試共用的測試圖片與訊息產生器，固定亂數種子讓每次量測的輸入一致
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/18
+ */
+final class BenchmarkImages {
+    static final String INT_ARGB = "INT_ARGB";
+    static final String BYTE_BGR = "3BYTE_BGR";
+    static final String INDEXED_PNG = "INDEXED_PNG";
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * 產生 size × size 的測試圖，約一半區域偏白，讓區域搜尋有實際的工作量
+     */
+    static BufferedImage create(int size, String type) {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(size, size,
+                BYTE_BGR.equals(type) ? BufferedImage.TYPE_3BYTE_BGR : BufferedImage.TYPE_INT_ARGB);
+        int[] row = new int[size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                row[x] = x > size / 2 ? 0xFFF0F0F0 | random.nextInt(0x10) : 0xFF000000 | random.nextInt();
+            }
+            image.setRGB(0, y, size, 1, row, 0, size);
+        }
+
+        if (INDEXED_PNG.equals(type)) {
+            // 模擬使用者丟進來的調色盤 PNG：轉成索引色後經過一次 PNG 編解碼
+            BufferedImage indexed = new BufferedImage(size, size, BufferedImage.TYPE_BYTE_INDEXED);
+            indexed.getGraphics().drawImage(image, 0, 0, null);
+            return decode(encode(indexed));
+        }
+        return image;
+    }
+
+    static String message(int bytes) {
+        StringBuilder sb = new StringBuilder(bytes);
+        Random random = new Random(7);
+        for (int i = 0; i < bytes; i++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+
+    static byte[] encode(BufferedImage image) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static BufferedImage decode(byte[] png) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(png));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.yienruuuuu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DataChooserTool} 隱碼與解碼的吞吐量
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class DataChooserToolBenchmark {
+    @Param({"512", "2048", "4096", "8192"})
+    int size;
+
+    @Param({BenchmarkImages.INT_ARGB, BenchmarkImages.BYTE_BGR, BenchmarkImages.INDEXED_PNG})
+    String imageType;
+
+    @Param({"16", "1024", "65536"})
+    int payloadBytes;
+
+    private BufferedImage cover;
+    private String message;
+    private BufferedImage stego;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cover = BenchmarkImages.create(size, imageType);
+        message = BenchmarkImages.message(payloadBytes);
+        stego = DataChooserTool.hideMessage(cover, message);
+    }
+
+    @Benchmark
+    public BufferedImage hideMessage() {
+        return DataChooserTool.hideMessage(cover, message);
+    }
+
+    @Benchmark
+    public String revealMessage() {
+        return DataChooserTool.revealMessage(stego);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.yienruuuuu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InvertSteganography} 各階段的吞吐量：白色區域搜尋 (實際使用的 placeText、單執行緒滑動視窗、
+ * 可重複查詢的 {@link RegionPlacer}) 與負片
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class InvertSteganographyBenchmark {
+    @Param({"512", "2048", "4096", "8192"})
+    int size;
+
+    @Param({BenchmarkImages.INT_ARGB, BenchmarkImages.BYTE_BGR, BenchmarkImages.INDEXED_PNG})
+    String imageType;
+
+    private BufferedImage image;
+    private PixelRowSource rows;
+    private WhiteRegionFinder finder;
+    private RegionPlacer placer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = BenchmarkImages.create(size, imageType);
+        rows = PixelRowSource.of(image);
+        finder = new WhiteRegionFinder(200, 50, 220);
+        placer = new RegionPlacer(220);
+    }
+
+    /**
+     * render 實際使用的路徑 (平行滑動視窗)
+     */
+    @Benchmark
+    public RegionPlacer.Placement placeText() {
+        return InvertSteganography.placeText(image, 200, 50, 220);
+    }
+
+    @Benchmark
+    public WhiteRegionFinder.Region findWhiteRegion() {
+        return finder.find(rows);
+    }
+
+    /**
+     * 同樣只找一個位置，但建立可重複查詢的索引，與 placeText 比較
+     */
+    @Benchmark
+    public List<RegionPlacer.Placement> placeRegion() {
+        return placer.index(rows, Runtime.getRuntime().availableProcessors()).top(200, 50, 1);
+    }
+
+    /**
+     * 同一個索引查詢三種區域大小、各取 5 個不重疊的位置
+     */
+    @Benchmark
+    public int placeRegionsMultiSize() {
+        RegionPlacer.Index index = placer.index(rows, Runtime.getRuntime().availableProcessors());
+        return index.top(200, 50, 5).size() + index.top(400, 100, 5).size() + index.top(120, 30, 5).size();
+    }
+
+    @Benchmark
+    public BufferedImage toNegative() {
+        return InvertSteganography.toNegative(image);
+    }
+}
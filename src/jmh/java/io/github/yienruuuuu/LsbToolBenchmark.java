@@ -0,0 +1,81 @@
+package io.github.yienruuuuu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LsbTool} 隱碼與解碼的吞吐量，涵蓋不同圖片大小、圖片型態與訊息長度
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class LsbToolBenchmark {
+    @Param({"512", "2048", "4096", "8192"})
+    int size;
+
+    @Param({BenchmarkImages.INT_ARGB, BenchmarkImages.BYTE_BGR, BenchmarkImages.INDEXED_PNG})
+    String imageType;
+
+    @Param({"16", "1024", "65536"})
+    int payloadBytes;
+
+    private BufferedImage cover;
+    private String message;
+    private BufferedImage stego;
+    private File stegoFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        cover = BenchmarkImages.create(size, imageType);
+        message = BenchmarkImages.message(payloadBytes);
+        stego = LsbTool.hideTextInImageLSB(cover, message);
+        stegoFile = Files.createTempFile("lsb-bench", ".png").toFile();
+        Files.write(stegoFile.toPath(), BenchmarkImages.encode(stego));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(stegoFile.toPath());
+    }
+
+    @Benchmark
+    public BufferedImage hideTextInImageLSB() {
+        return LsbTool.hideTextInImageLSB(cover, message);
+    }
+
+    @Benchmark
+    public String extractTextFromImageLSB() {
+        return LsbTool.extractTextFromImageLSB(stego);
+    }
+
+    /**
+     * 從 PNG 檔案串流解碼，包含 PNG 解壓縮的成本
+     */
+    @Benchmark
+    public String extractTextFromFile() throws IOException {
+        return LsbTool.extractTextFromImageLSB(stegoFile);
+    }
+}
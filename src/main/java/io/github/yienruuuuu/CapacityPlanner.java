@@ -0,0 +1,412 @@
+package io.github.yienruuuuu;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 藏入前的容量檢查。
+ * <p>
+ * 只以 {@link ImageReader#getWidth(int)} / {@link ImageReader#getHeight(int)} 讀取 PNG / JPEG 等格式的檔頭，
+ * 不解碼任何像素，就能算出每種模式可以藏多少 bytes (已考慮長度前綴、ECC 與壓縮)，
+ * 讓放不下的訊息在讀圖之前就被拒絕，或改用容量較大的模式。
+ * <p>
+ * 模式依偏好順序排列，{@link #plan} 取第一個放得下的模式；{@link #forBase(LsbOptions)} 的順序是
+ * 原設定 → 壓縮 → 加上 alpha 通道 → 每個通道多藏 1 bit，密語與 ECC 設定維持不變。
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+public final class CapacityPlanner {
+    private final List<LsbOptions> modes;
+
+    /**
+     * @param modes 依偏好順序排列的候選模式，第一個為預設模式
+     */
+    public CapacityPlanner(List<LsbOptions> modes) {
+        if (modes.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一種模式");
+        }
+        this.modes = List.copyOf(modes);
+    }
+
+    /**
+     * 只允許指定的模式，放不下就拒絕
+     */
+    public static CapacityPlanner strict(LsbOptions options) {
+        return new CapacityPlanner(List.of(options));
+    }
+
+    /**
+     * 放不下時依序改用壓縮、alpha 通道與更多 bits 的模式
+     */
+    public static CapacityPlanner forBase(LsbOptions base) {
+        List<LsbOptions> modes = new ArrayList<>();
+        modes.add(base);
+        LsbOptions current = base;
+        if (!current.isCompress()) {
+            current = current.withCompression(true);
+            modes.add(current);
+        }
+        if (!current.isUseAlpha()) {
+            current = current.withAlpha(true);
+            modes.add(current);
+        }
+        for (int bits = current.getBitsPerChannel() + 1; bits <= 4; bits++) {
+            modes.add(current.withBitsPerChannel(bits));
+        }
+        return new CapacityPlanner(modes);
+    }
+
+    public List<LsbOptions> getModes() {
+        return modes;
+    }
+
+    /**
+     * 從檔頭讀出的圖片資訊
+     */
+    public static final class ImageInfo {
+        private final String format;
+        private final int width;
+        private final int height;
+
+        public ImageInfo(String format, int width, int height) {
+            this.format = format;
+            this.width = width;
+            this.height = height;
+        }
+
+        public String getFormat() {
+            return format;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+
+    /**
+     * 只讀檔頭取得圖片格式與尺寸，不解碼像素
+     */
+    public static ImageInfo probe(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                throw new IOException("無法開啟圖片：" + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("不支援的圖片格式：" + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new ImageInfo(reader.getFormatName(), reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 檢查結果
+     */
+    public enum Status {
+        /**
+         * 預設模式放得下
+         */
+        FITS,
+        /**
+         * 預設模式放不下，改用後面的模式
+         */
+        ROUTED,
+        /**
+         * 所有模式都放不下
+         */
+        TOO_LARGE,
+        /**
+         * 檔案不存在或無法讀取檔頭
+         */
+        UNREADABLE
+    }
+
+    /**
+     * 一段訊息對一張圖的檢查結果
+     */
+    public static final class Plan {
+        private final Status status;
+        private final LsbOptions options;
+        private final long required;
+        private final long capacity;
+        private final String error;
+
+        Plan(Status status, LsbOptions options, long required, long capacity, String error) {
+            this.status = status;
+            this.options = options;
+            this.required = required;
+            this.capacity = capacity;
+            this.error = error;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean fits() {
+            return status == Status.FITS || status == Status.ROUTED;
+        }
+
+        /**
+         * 選中的模式；放不下或無法讀取時為 null
+         */
+        public LsbOptions getOptions() {
+            return options;
+        }
+
+        /**
+         * 實際要寫入的 bytes (選中的模式有壓縮時為壓縮後的大小)
+         */
+        public long getRequired() {
+            return required;
+        }
+
+        /**
+         * 選中模式的容量；放不下時為所有候選模式中最大的容量
+         */
+        public long getCapacity() {
+            return capacity;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            switch (status) {
+                case UNREADABLE:
+                    return status + " " + error;
+                case TOO_LARGE:
+                    return status + " 需要 " + required + " bytes，最大容量 " + capacity + " bytes";
+                default:
+                    return status + " " + describe(options) + " (" + required + "/" + capacity + " bytes)";
+            }
+        }
+    }
+
+    /**
+     * 依序找出第一個放得下 payload 的模式；壓縮只在真的有變小時才算進去，與實際藏入時的規則相同
+     */
+    public Plan plan(ImageInfo image, byte[] payload) {
+        long raw = payload.length;
+        long compressed = -1;
+        long required = raw;
+        long maxCapacity = -1;
+        for (int i = 0; i < modes.size(); i++) {
+            LsbOptions options = modes.get(i);
+            long stored = raw;
+            LsbOptions effective = options;
+            if (options.isCompress()) {
+                if (compressed < 0) {
+                    compressed = LsbRasterCodec.deflate(payload).length;
+                }
+                if (compressed < raw) {
+                    stored = compressed;
+                } else {
+                    // 沒有變小時實際會以不壓縮的模式藏入，容量要照那個模式算 (可能退回舊格式)
+                    effective = options.withCompression(false);
+                }
+            }
+            // 連長度前綴都放不下時為 -1，空訊息也不算放得下
+            long capacity = LsbRasterCodec.payloadCapacity(image.getWidth(), image.getHeight(), effective);
+            if (stored <= capacity) {
+                return new Plan(i == 0 ? Status.FITS : Status.ROUTED, options, stored, capacity, null);
+            }
+            if (capacity > maxCapacity) {
+                maxCapacity = capacity;
+                required = stored;
+            }
+        }
+        return new Plan(Status.TOO_LARGE, null, required, maxCapacity, null);
+    }
+
+    public Plan plan(Path file, String message) {
+        return plan(file, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Plan plan(Path file, byte[] payload) {
+        ImageInfo image;
+        try {
+            image = probe(file);
+        } catch (IOException | RuntimeException e) {
+            return new Plan(Status.UNREADABLE, null, payload.length, -1, e.getMessage());
+        }
+        return plan(image, payload);
+    }
+
+    /**
+     * 預設模式放不下時丟出 IllegalArgumentException，訊息與藏入時容量不足相同
+     */
+    static void check(Path file, byte[] payload, LsbOptions options) throws IOException {
+        Plan plan = strict(options).plan(probe(file), payload);
+        if (!plan.fits()) {
+            throw new IllegalArgumentException("圖片容量不足以藏這段訊息");
+        }
+    }
+
+    /**
+     * 整份 manifest 的檢查結果，順序與 jobs 相同
+     */
+    public static final class Report {
+        private final List<LsbBatchRunner.Job> jobs;
+        private final List<Plan> plans;
+
+        Report(List<LsbBatchRunner.Job> jobs, List<Plan> plans) {
+            this.jobs = jobs;
+            this.plans = plans;
+        }
+
+        public List<LsbBatchRunner.Job> getJobs() {
+            return jobs;
+        }
+
+        public List<Plan> getPlans() {
+            return plans;
+        }
+
+        public Map<Status, Integer> counts() {
+            Map<Status, Integer> counts = new EnumMap<>(Status.class);
+            for (Status status : Status.values()) {
+                counts.put(status, 0);
+            }
+            for (Plan plan : plans) {
+                counts.merge(plan.status, 1, Integer::sum);
+            }
+            return counts;
+        }
+
+        @Override
+        public String toString() {
+            Map<Status, Integer> counts = counts();
+            return String.format("共 %d 筆：放得下 %d，改用其他模式 %d，放不下 %d，無法讀取 %d",
+                    plans.size(), counts.get(Status.FITS), counts.get(Status.ROUTED),
+                    counts.get(Status.TOO_LARGE), counts.get(Status.UNREADABLE));
+        }
+    }
+
+    /**
+     * 以多條執行緒檢查整份 manifest ({@link LsbBatchRunner} 的格式)，每張圖只讀檔頭
+     */
+    public Report validate(Path inputDir, List<LsbBatchRunner.Job> jobs, int threads)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Plan>> futures = new ArrayList<>(jobs.size());
+            for (LsbBatchRunner.Job job : jobs) {
+                futures.add(pool.submit(() -> plan(inputDir.resolve(job.getFileName()), job.getMessage())));
+            }
+            List<Plan> plans = new ArrayList<>(jobs.size());
+            for (Future<Plan> future : futures) {
+                try {
+                    plans.add(future.get());
+                } catch (ExecutionException e) {
+                    // plan 已經把讀檔錯誤轉成 UNREADABLE，這裡只會是非預期的錯誤
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return new Report(Collections.unmodifiableList(jobs), Collections.unmodifiableList(plans));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 例如 {@code bpc=2 alpha compress ecc key}，舊版格式為 {@code legacy}
+     */
+    static String describe(LsbOptions options) {
+        StringBuilder sb = new StringBuilder(options.isExtended() ? "bpc=" + options.getBitsPerChannel() : "legacy");
+        if (options.isUseAlpha()) {
+            sb.append(" alpha");
+        }
+        if (options.isCompress()) {
+            sb.append(" compress");
+        }
+        if (options.isErrorCorrection()) {
+            sb.append(" ecc");
+        }
+        if (options.isKeyed()) {
+            sb.append(" key");
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("用法: CapacityPlanner <輸入資料夾> <manifest> [--strict] [--bpc N] [--alpha] [--compress] [--ecc] [--key 密語]");
+            return;
+        }
+        try {
+            LsbOptions base = LsbOptions.legacy();
+            boolean strict = false;
+            for (int i = 2; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--strict":
+                        strict = true;
+                        break;
+                    case "--bpc":
+                        base = base.withBitsPerChannel(Integer.parseInt(args[++i]));
+                        break;
+                    case "--alpha":
+                        base = base.withAlpha(true);
+                        break;
+                    case "--compress":
+                        base = base.withCompression(true);
+                        break;
+                    case "--ecc":
+                        base = base.withErrorCorrection(true);
+                        break;
+                    case "--key":
+                        base = base.withKey(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知的選項：" + args[i]);
+                }
+            }
+            CapacityPlanner planner = strict ? strict(base) : forBase(base);
+            Path inputDir = Paths.get(args[0]);
+            List<LsbBatchRunner.Job> jobs = LsbBatchRunner.readManifest(Paths.get(args[1]));
+
+            long start = System.nanoTime();
+            Report report = planner.validate(inputDir, jobs, Runtime.getRuntime().availableProcessors() * 2);
+            long elapsed = System.nanoTime() - start;
+            for (int i = 0; i < jobs.size(); i++) {
+                Plan plan = report.plans.get(i);
+                if (plan.status != Status.FITS) {
+                    System.out.println(jobs.get(i).getFileName() + "\t" + plan);
+                }
+            }
+            Map<Status, Integer> counts = report.counts();
+            boolean ok = counts.get(Status.TOO_LARGE) == 0 && counts.get(Status.UNREADABLE) == 0;
+            System.out.printf("%s %s，耗時 %.2f 秒%n", ok ? "✅" : "⚠️", report, elapsed / 1_000_000_000.0);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
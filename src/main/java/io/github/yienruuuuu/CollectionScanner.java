@@ -0,0 +1,532 @@
+package io.github.yienruuuuu;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 整個 collection 的隱碼稽核工具。
+ * <p>
+ * 走訪資料夾 (含子資料夾) 或 zip 壓縮檔中的每一張圖片，取出隱藏訊息並寫入二進位索引檔
+ * (路徑、大小、修改時間、狀態、訊息長度、訊息 SHA-256)。I/O 執行緒池開檔並預先讀入檔頭，解碼在另一個
+ * 以 CPU 核心數為上限的執行緒池一邊讀取一邊進行 (只讀到訊息結束為止，不會把整個檔案載入記憶體)，
+ * 並以 semaphore 限制同時開啟的檔案數量。
+ * <p>
+ * 重新掃描時，大小與修改時間都沒變的檔案直接沿用上次索引的結果，上次處理失敗的檔案則一律重新檢查。若提供 manifest
+ * ({@link LsbBatchRunner} 的格式)，會比對訊息雜湊並標記不符的圖片。
+ * <p>
+ * 以密語藏入的圖片 ({@link LsbOptions#withKey(String)}) 需要以相同密語建立 scanner 才取得出訊息；
+ * 這類圖片的像素分散在整張圖，必須整張解碼，比一般圖片慢得多。
+ *
+ * @author Eric.Lee
+ * Date: 2025/5/27
+ */
+public class CollectionScanner {
+    private static final int INDEX_MAGIC = 0x4C534249; // "LSBI"
+    private static final int INDEX_VERSION = 1;
+    private static final String PART_SUFFIX = ".part";
+    private static final String[] IMAGE_EXTENSIONS = {".png", ".jpg", ".jpeg", ".bmp", ".gif"};
+    /**
+     * I/O 執行緒預先讀入的檔頭大小，一般長度的訊息解碼時不必再回頭等 I/O
+     */
+    private static final int PREFETCH_BYTES = 64 * 1024;
+
+    private final int ioThreads;
+    private final int cpuThreads;
+    private final int maxInFlight;
+    private final byte[] key;
+
+    public CollectionScanner(int ioThreads, int cpuThreads, int maxInFlight) {
+        this(ioThreads, cpuThreads, maxInFlight, null);
+    }
+
+    /**
+     * @param key 藏入時使用的密語，找不到一般格式的訊息時再以密語嘗試；null 或空字串代表不使用
+     */
+    public CollectionScanner(int ioThreads, int cpuThreads, int maxInFlight, String key) {
+        if (ioThreads < 1 || cpuThreads < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("ioThreads、cpuThreads 與 maxInFlight 必須大於 0");
+        }
+        this.ioThreads = ioThreads;
+        this.cpuThreads = cpuThreads;
+        this.maxInFlight = maxInFlight;
+        this.key = LsbOptions.deriveKey(key);
+    }
+
+    /**
+     * 單張圖片的檢查結果
+     */
+    public enum Status {
+        /**
+         * 取出訊息 (有 manifest 時代表與預期相符)
+         */
+        FOUND,
+        /**
+         * 取出的訊息與 manifest 不符
+         */
+        MISMATCH,
+        /**
+         * 沒有合法的隱藏訊息 (長度為 0 的訊息也算在內)；scanner 沒有設定密語時，以密語藏入的圖片也會是這個狀態
+         */
+        NOT_FOUND,
+        /**
+         * 無法讀取或解碼，下次掃描時一定重新檢查
+         */
+        ERROR
+    }
+
+    /**
+     * 索引中的一筆記錄
+     */
+    public static final class Entry {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final Status status;
+        private final int length;
+        private final byte[] sha256;
+
+        Entry(String path, long size, long lastModified, Status status, int length, byte[] sha256) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.status = status;
+            this.length = length;
+            this.sha256 = sha256;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * 訊息長度 (bytes)，沒有訊息時為 -1
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * 訊息的 SHA-256，沒有訊息時為 null
+         */
+        public byte[] getSha256() {
+            return sha256 == null ? null : sha256.clone();
+        }
+
+        private Entry withStatus(Status status) {
+            return status == this.status ? this : new Entry(path, size, lastModified, status, length, sha256);
+        }
+    }
+
+    /**
+     * 整次掃描的統計結果
+     */
+    public static final class Report {
+        private final int scanned;
+        private final int unchanged;
+        private final Map<Status, Integer> counts;
+        private final long elapsedNanos;
+
+        Report(int scanned, int unchanged, Map<Status, Integer> counts, long elapsedNanos) {
+            this.scanned = scanned;
+            this.unchanged = unchanged;
+            this.counts = counts;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getScanned() {
+            return scanned;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public int getCount(Status status) {
+            return counts.getOrDefault(status, 0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("解碼 %d 張，沿用索引 %d 張；有訊息 %d、不符 %d、無訊息 %d、錯誤 %d，耗時 %.1f 秒",
+                    scanned, unchanged, getCount(Status.FOUND), getCount(Status.MISMATCH),
+                    getCount(Status.NOT_FOUND), getCount(Status.ERROR), elapsedNanos / 1_000_000_000.0);
+        }
+    }
+
+    /**
+     * 一個待檢查的檔案，每次 open 都從頭開啟一條新的串流
+     */
+    private interface Candidate {
+        String path();
+
+        /**
+         * 檔案大小；zip entry 沒有記錄時為 -1
+         */
+        long size();
+
+        long lastModified();
+
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * 掃描 source (資料夾或 .zip)，結果寫入 indexFile
+     *
+     * @param expected 檔名 → 預期訊息，不需比對時傳入空 map
+     */
+    public Report scan(Path source, Path indexFile, Map<String, String> expected) throws IOException, InterruptedException {
+        Map<String, Entry> previous = Files.exists(indexFile) ? readIndex(indexFile) : Collections.emptyMap();
+        Map<String, byte[]> expectedHashes = new HashMap<>();
+        for (Map.Entry<String, String> e : expected.entrySet()) {
+            expectedHashes.put(e.getKey(), sha256(e.getValue().getBytes(StandardCharsets.UTF_8)));
+        }
+
+        Map<String, Entry> results = new ConcurrentHashMap<>();
+        AtomicInteger scanned = new AtomicInteger();
+        AtomicInteger unchanged = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ExecutorService io = Executors.newFixedThreadPool(ioThreads);
+        ExecutorService cpu = Executors.newFixedThreadPool(cpuThreads);
+
+        long start = System.nanoTime();
+        try {
+            CandidateConsumer consumer = candidate -> {
+                Entry old = previous.get(candidate.path());
+                // 上次失敗的一律重試 (可能只是暫時的 I/O 錯誤)；沒找到訊息的圖片，這次有密語時也要重新檢查
+                if (old != null && old.size == candidate.size() && old.lastModified == candidate.lastModified()
+                        && old.status != Status.ERROR && (key == null || old.status != Status.NOT_FOUND)) {
+                    // 檔案沒變，只依最新的 manifest 重新判斷狀態
+                    results.put(old.path, judge(old, expectedHashes));
+                    unchanged.incrementAndGet();
+                    return;
+                }
+                try {
+                    inFlight.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("掃描被中斷");
+                }
+                CompletableFuture
+                        .supplyAsync(() -> {
+                            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.READ)) {
+                                return prefetch(candidate);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }, io)
+                        .thenApplyAsync(in -> judge(inspect(candidate, in), expectedHashes), cpu)
+                        .whenComplete((entry, error) -> {
+                            if (error != null) {
+                                StageMetrics.failure(StageMetrics.EXTRACT, error.getCause() != null ? error.getCause() : error);
+                                System.err.println("⚠️ 處理失敗：" + candidate.path() + " - " + error.getCause());
+                                entry = new Entry(candidate.path(), candidate.size(), candidate.lastModified(),
+                                        Status.ERROR, -1, null);
+                            }
+                            results.put(entry.path, entry);
+                            scanned.incrementAndGet();
+                            inFlight.release();
+                        });
+            };
+            if (Files.isDirectory(source)) {
+                walkDirectory(source, consumer);
+                // 拿回全部的 permit 代表所有工作都已完成
+                inFlight.acquire(maxInFlight);
+            } else {
+                // ZipFile 允許多條執行緒同時讀取不同的 entry，要等全部讀完才能關閉
+                try (ZipFile zip = new ZipFile(source.toFile())) {
+                    walkZip(zip, consumer);
+                    inFlight.acquire(maxInFlight);
+                }
+            }
+        } finally {
+            io.shutdownNow();
+            cpu.shutdownNow();
+            io.awaitTermination(1, TimeUnit.MINUTES);
+            cpu.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        writeIndex(indexFile, results);
+        Map<Status, Integer> counts = new HashMap<>();
+        for (Entry entry : results.values()) {
+            counts.merge(entry.status, 1, Integer::sum);
+        }
+        return new Report(scanned.get(), unchanged.get(), counts, System.nanoTime() - start);
+    }
+
+    private interface CandidateConsumer {
+        void accept(Candidate candidate) throws IOException;
+    }
+
+    private static void walkDirectory(Path root, CandidateConsumer consumer) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && isImage(file.getFileName().toString())) {
+                    String path = root.relativize(file).toString().replace('\\', '/');
+                    consumer.accept(candidate(path, attrs.size(), attrs.lastModifiedTime().toMillis(),
+                            () -> Files.newInputStream(file)));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void walkZip(ZipFile zip, CandidateConsumer consumer) throws IOException {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (entry.isDirectory() || !isImage(name.substring(name.lastIndexOf('/') + 1))) {
+                continue;
+            }
+            consumer.accept(candidate(name, entry.getSize(), entry.getTime(), () -> zip.getInputStream(entry)));
+        }
+    }
+
+    private interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    private static Candidate candidate(String path, long size, long lastModified, Opener opener) {
+        return new Candidate() {
+            @Override
+            public String path() {
+                return path;
+            }
+
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public long lastModified() {
+                return lastModified;
+            }
+
+            @Override
+            public InputStream open() throws IOException {
+                return opener.open();
+            }
+        };
+    }
+
+    /**
+     * 在 I/O 執行緒開檔並讀入檔頭，其餘部分留給解碼時再依需要讀取
+     */
+    private static InputStream prefetch(Candidate candidate) throws IOException {
+        InputStream in = candidate.open();
+        try {
+            byte[] head = in.readNBytes(PREFETCH_BYTES);
+            return new SequenceInputStream(new ByteArrayInputStream(head), in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private Entry inspect(Candidate candidate, InputStream stream) {
+        byte[] payload;
+        try (InputStream source = stream;
+             ImageInputStream in = new MemoryCacheImageInputStream(source);
+             StageMetrics.Span span = StageMetrics.start(StageMetrics.EXTRACT)) {
+            payload = LsbStreamExtractor.extract(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // 沒藏過訊息的圖 (例如 LSB 全為 0 的黑白底) 也會解出長度 0 的訊息，和找不到訊息一樣看待；有密語時再以密語試一次
+        if (key != null && (payload == null || payload.length == 0)) {
+            payload = inspectKeyed(candidate);
+        }
+        if (payload == null || payload.length == 0) {
+            return new Entry(candidate.path(), candidate.size(), candidate.lastModified(), Status.NOT_FOUND, -1, null);
+        }
+        StageMetrics.count(StageMetrics.IMAGES_EXTRACTED, 1);
+        return new Entry(candidate.path(), candidate.size(), candidate.lastModified(),
+                Status.FOUND, payload.length, sha256(payload));
+    }
+
+    /**
+     * 以密語藏入的像素分散在整張圖，只能重新開檔整張解碼
+     */
+    private byte[] inspectKeyed(Candidate candidate) {
+        try (InputStream in = new BufferedInputStream(candidate.open());
+             StageMetrics.Span span = StageMetrics.start(StageMetrics.EXTRACT)) {
+            BufferedImage image = ImageIO.read(in);
+            if (image == null) {
+                throw new IOException("不支援的圖片格式");
+            }
+            return LsbRasterCodec.extract(image, key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 有 manifest 時依訊息雜湊決定 FOUND / MISMATCH；manifest 中沒有這個檔名就維持原狀態
+     */
+    private static Entry judge(Entry entry, Map<String, byte[]> expectedHashes) {
+        if (entry.status != Status.FOUND && entry.status != Status.MISMATCH) {
+            return entry;
+        }
+        String fileName = entry.path.substring(entry.path.lastIndexOf('/') + 1);
+        byte[] expected = expectedHashes.get(fileName);
+        if (expected == null) {
+            return entry.withStatus(Status.FOUND);
+        }
+        return entry.withStatus(Arrays.equals(expected, entry.sha256) ? Status.FOUND : Status.MISMATCH);
+    }
+
+    private static boolean isImage(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        for (String ext : IMAGE_EXTENSIONS) {
+            if (lower.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 讀取索引檔，回傳 路徑 → 記錄
+     */
+    public static Map<String, Entry> readIndex(Path indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                throw new IOException("不是掃描索引檔: " + indexFile);
+            }
+            int count = in.readInt();
+            Map<String, Entry> entries = new HashMap<>();
+            Status[] statuses = Status.values();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                Status status = statuses[in.readUnsignedByte()];
+                int length = in.readInt();
+                byte[] sha256 = null;
+                if (length >= 0) {
+                    sha256 = new byte[32];
+                    in.readFully(sha256);
+                }
+                entries.put(path, new Entry(path, size, lastModified, status, length, sha256));
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * 依路徑排序寫出索引，先寫暫存檔再搬移，中斷時不會破壞上一次的索引
+     */
+    static void writeIndex(Path indexFile, Map<String, Entry> entries) throws IOException {
+        Path part = indexFile.resolveSibling(indexFile.getFileName() + PART_SUFFIX);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(part)))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(entries.size());
+                for (Entry entry : new TreeMap<>(entries).values()) {
+                    out.writeUTF(entry.path);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.lastModified);
+                    out.writeByte(entry.status.ordinal());
+                    out.writeInt(entry.length);
+                    if (entry.length >= 0) {
+                        out.write(entry.sha256);
+                    }
+                }
+            }
+            Files.move(part, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("用法: CollectionScanner <資料夾或 zip> <索引檔> [manifest] [解碼執行緒數] [I/O 執行緒數] [密語]");
+            return;
+        }
+        try {
+            Map<String, String> expected = new HashMap<>();
+            if (args.length > 2 && !args[2].isEmpty()) {
+                for (LsbBatchRunner.Job job : LsbBatchRunner.readManifest(Paths.get(args[2]))) {
+                    expected.put(LsbBatchRunner.outputName(job.getFileName()), job.getMessage());
+                }
+            }
+            int cpuThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            int ioThreads = args.length > 4 ? Integer.parseInt(args[4]) : cpuThreads * 4;
+
+            StageRecorder recorder = StageMetrics.createDefault();
+            StageMetrics.install(recorder);
+
+            Path indexFile = Paths.get(args[1]);
+            String key = args.length > 5 ? args[5] : null;
+            CollectionScanner scanner = new CollectionScanner(ioThreads, cpuThreads, ioThreads + cpuThreads * 2, key);
+            Report report = scanner.scan(Paths.get(args[0]), indexFile, expected);
+            System.out.println("✅ " + report);
+            // 各階段耗時的 JSON 摘要寫在索引檔旁邊
+            recorder.writeSummary(indexFile.resolveSibling(indexFile.getFileName() + ".metrics.json"));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
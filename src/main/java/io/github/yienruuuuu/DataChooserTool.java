@@ -6,9 +6,20 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
+/**
+ * 簡易的隱碼 / 解碼視窗。
+ * <p>
+ * 讀圖、隱碼與寫檔都在 {@link SwingWorker} 的背景執行緒中進行，EDT 只負責顯示進度視窗，
+ * 大圖處理時介面不會凍結，也可以隨時取消 (在各階段之間生效，解碼時會中斷讀檔)。
+ */
 public class DataChooserTool {
+    private static final int MAX_DIALOG_CHARS = 2000;
+
     private final JFrame frame;
+    private final JButton[] actions;
     private File selectedFile;
 
     public DataChooserTool() {
@@ -23,6 +34,7 @@ public class DataChooserTool {
         JButton chooseButton = new JButton("選擇圖片");
         JButton encodeButton = new JButton("隱碼");
         JButton decodeButton = new JButton("解碼");
+        actions = new JButton[]{chooseButton, encodeButton, decodeButton};
 
         chooseButton.addActionListener(e -> {
             JFileChooser fileChooser = new JFileChooser();
@@ -38,11 +50,22 @@ public class DataChooserTool {
             if (selectedFile != null) {
                 String message = JOptionPane.showInputDialog("輸入要隱藏的訊息:");
                 if (message != null) {
-                    BufferedImage image = loadImage(selectedFile);
-                    if (image != null) {
-                        BufferedImage encodedImage = hideMessage(image, message);
-                        saveImage(encodedImage, "encoded_image.png");
-                    }
+                    File source = selectedFile;
+                    run(new ImageTask<File>("隱碼中…") {
+                        @Override
+                        protected File doInBackground() throws IOException {
+                            BufferedImage image = loadImage(source);
+                            step(40);
+                            BufferedImage encodedImage = hideMessage(image, message);
+                            step(70);
+                            return saveImage(encodedImage, "encoded_image.png");
+                        }
+
+                        @Override
+                        protected void succeeded(File target) {
+                            JOptionPane.showMessageDialog(frame, "圖片已儲存: " + target.getName());
+                        }
+                    });
                 }
             } else {
                 JOptionPane.showMessageDialog(frame, "請選擇圖片！");
@@ -51,11 +74,28 @@ public class DataChooserTool {
 
         decodeButton.addActionListener(e -> {
             if (selectedFile != null) {
-                BufferedImage image = loadImage(selectedFile);
-                if (image != null) {
-                    String message = revealMessage(image);
-                    JOptionPane.showMessageDialog(frame, "解碼訊息: " + message);
-                }
+                File source = selectedFile;
+                run(new ImageTask<String>("解碼中…") {
+                    @Override
+                    protected String doInBackground() throws IOException {
+                        step(10);
+                        // 直接從檔案逐列解碼，讀完訊息就停止，不必把整張圖讀進記憶體；
+                        // 取消時會中斷執行緒，讀檔的 channel 因此關閉，解碼以 IOException 結束
+                        String message;
+                        try {
+                            message = LsbTool.extractTextFromImageLSB(source);
+                        } catch (IOException e) {
+                            throw new IOException("無法讀取圖片！", e);
+                        }
+                        step(90);
+                        return message;
+                    }
+
+                    @Override
+                    protected void succeeded(String message) {
+                        JOptionPane.showMessageDialog(frame, preview(message));
+                    }
+                });
             } else {
                 JOptionPane.showMessageDialog(frame, "請選擇圖片！");
             }
@@ -69,65 +109,138 @@ public class DataChooserTool {
         frame.setVisible(true);
     }
 
-    private BufferedImage loadImage(File file) {
-        try {
-            return ImageIO.read(file);
-        } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(frame, "無法讀取圖片！");
-            return null;
+    /**
+     * 在背景執行的工作：doInBackground 在工作執行緒，succeeded 在 EDT 上呼叫
+     */
+    private abstract static class ImageTask<T> extends SwingWorker<T, Void> {
+        private final String title;
+
+        ImageTask(String title) {
+            this.title = title;
         }
+
+        /**
+         * 進入下一個階段；已經取消時丟出 CancellationException 結束工作
+         */
+        protected void step(int progress) {
+            if (isCancelled() || Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+            setProgress(progress);
+        }
+
+        protected abstract void succeeded(T result);
+    }
+
+    /**
+     * 顯示進度視窗並執行工作，執行期間停用所有按鈕
+     */
+    private <T> void run(ImageTask<T> task) {
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        JButton cancelButton = new JButton("取消");
+        cancelButton.addActionListener(e -> task.cancel(true));
+
+        JDialog dialog = new JDialog(frame, task.title, false);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        dialog.setLayout(new BorderLayout(8, 8));
+        dialog.add(progressBar, BorderLayout.CENTER);
+        dialog.add(cancelButton, BorderLayout.SOUTH);
+        dialog.pack();
+        dialog.setLocationRelativeTo(frame);
+
+        task.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                progressBar.setValue((Integer) evt.getNewValue());
+            } else if ("state".equals(evt.getPropertyName()) && task.isDone()) {
+                dialog.dispose();
+                setBusy(false);
+                finish(task);
+            }
+        });
+        setBusy(true);
+        dialog.setVisible(true);
+        task.execute();
     }
 
-    private void saveImage(BufferedImage image, String fileName) {
+    private <T> void finish(ImageTask<T> task) {
+        if (task.isCancelled()) {
+            return;
+        }
         try {
-            ImageIO.write(image, "png", new File(fileName));
-            JOptionPane.showMessageDialog(frame, "圖片已儲存: " + fileName);
+            task.succeeded(task.get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CancellationException) {
+                return;
+            }
+            cause.printStackTrace();
+            boolean expected = cause instanceof IOException || cause instanceof IllegalArgumentException;
+            JOptionPane.showMessageDialog(frame, expected ? cause.getMessage() : "處理失敗：" + cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void setBusy(boolean busy) {
+        for (JButton action : actions) {
+            action.setEnabled(!busy);
+        }
+    }
+
+    private static BufferedImage loadImage(File file) throws IOException {
+        BufferedImage image;
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+            image = ImageIO.read(file);
         } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(frame, "無法儲存圖片！");
+            StageMetrics.failure(StageMetrics.DECODE, e);
+            throw e;
         }
+        if (image == null) {
+            IOException e = new IOException("無法讀取圖片！");
+            StageMetrics.failure(StageMetrics.DECODE, e);
+            throw e;
+        }
+        return image;
     }
 
-    private BufferedImage hideMessage(BufferedImage image, String message) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        int messageIndex = 0;
-        int messageLength = message.length();
-        boolean messageCompleted = false;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = image.getRGB(x, y);
-                if (!messageCompleted && messageIndex < messageLength) {
-                    char character = message.charAt(messageIndex);
-                    int modifiedPixel = (pixel & 0xFFFFFFFE) | (character & 1);
-                    newImage.setRGB(x, y, modifiedPixel);
-                    messageIndex++;
-                    if (messageIndex >= messageLength) {
-                        messageCompleted = true;
-                    }
-                } else {
-                    newImage.setRGB(x, y, pixel);
-                }
-            }
+    private static File saveImage(BufferedImage image, String fileName) throws IOException {
+        File target = new File(fileName);
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.ENCODE)) {
+            ImageEncoder.defaultEncoder().write(image, target.toPath());
+            return target;
+        } catch (IOException e) {
+            StageMetrics.failure(StageMetrics.ENCODE, e);
+            throw new IOException("無法儲存圖片！", e);
         }
-        return newImage;
     }
 
-    private String revealMessage(BufferedImage image) {
-        StringBuilder message = new StringBuilder();
-        int width = image.getWidth();
-        int height = image.getHeight();
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = image.getRGB(x, y);
-                char character = (char) (pixel & 1);
-                message.append(character);
-            }
+    /**
+     * 以與 {@link LsbTool} 相同的格式藏入訊息：32 bits 長度前綴 + UTF-8 內容，每個像素的 RGB 各藏 1 bit
+     */
+    static BufferedImage hideMessage(BufferedImage image, String message) {
+        return LsbTool.hideTextInImageLSB(image, message);
+    }
+
+    /**
+     * 讀完長度前綴與訊息就停止，只走訪放有訊息的像素；長度超過圖片容量或沒有隱藏訊息時回傳 null
+     */
+    static String revealMessage(BufferedImage image) {
+        return LsbTool.extractTextFromImageLSB(image);
+    }
+
+    /**
+     * 對話框只顯示前面一段，避免很長的訊息把視窗撐爆
+     */
+    static String preview(String message) {
+        if (message == null) {
+            return "圖片中沒有隱藏訊息";
+        }
+        if (message.length() <= MAX_DIALOG_CHARS) {
+            return "解碼訊息: " + message;
         }
-        return message.toString();
+        return "解碼訊息 (共 " + message.length() + " 字，只顯示前 " + MAX_DIALOG_CHARS + " 字): "
+                + message.substring(0, MAX_DIALOG_CHARS) + "…";
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,147 @@
+package io.github.yienruuuuu;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 找出能把文字放進指定區域的最大字型大小。
+ * <p>
+ * 以二分搜尋取代原本從最大值逐一往下試，並把 (字型, 樣式, 大小, 文字) 的量測結果放進有上限的 LRU 快取，
+ * 整批圖片蓋同一段文字時只有第一張需要真的量測。量測用的 Graphics2D 與繪製用的一樣來自 BufferedImage，
+ * 且使用同一個字型，量到的寬高就是實際畫出來的寬高。
+ *
+ * @author Eric.Lee
+ * Date: 2025/5/13
+ */
+public final class FontFitter {
+    private final Map<Key, Metrics> cache;
+
+    /**
+     * @param maxEntries 快取最多保留幾筆量測結果
+     */
+    public FontFitter(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries 必須大於 0");
+        }
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Metrics> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * 量測結果：字型本身以及文字的寬、高 (含 ascent + descent + leading) 與 ascent
+     */
+    public static final class Metrics {
+        private final Font font;
+        private final int width;
+        private final int height;
+        private final int ascent;
+
+        Metrics(Font font, int width, int height, int ascent) {
+            this.font = font;
+            this.width = width;
+            this.height = height;
+            this.ascent = ascent;
+        }
+
+        public Font getFont() {
+            return font;
+        }
+
+        public int getFontSize() {
+            return font.getSize();
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getAscent() {
+            return ascent;
+        }
+    }
+
+    /**
+     * 在 [minSize, maxSize] 之間找出寬高都不超過區域的最大字型
+     *
+     * @return 找不到可以放進區域的大小時回傳 null
+     */
+    public Metrics fit(String fontName, int style, String message,
+                       int regionWidth, int regionHeight, int minSize, int maxSize) {
+        Metrics best = null;
+        int low = minSize;
+        int high = maxSize;
+        while (low <= high) {
+            int size = (low + high) >>> 1;
+            Metrics m = measure(fontName, style, size, message);
+            if (m.width <= regionWidth && m.height <= regionHeight) {
+                best = m;
+                low = size + 1;
+            } else {
+                high = size - 1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 量測指定字型與大小下整段文字的寬高，結果會被快取
+     */
+    public Metrics measure(String fontName, int style, int size, String message) {
+        Key key = new Key(fontName, style, size, message);
+        Metrics cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Font font = new Font(fontName, style, size);
+        // 與繪製時相同的 BufferedImage Graphics2D 預設 rendering hints，量到的 advance 才會一致
+        BufferedImage tmp = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = tmp.createGraphics();
+        try {
+            FontMetrics fm = g.getFontMetrics(font);
+            Metrics m = new Metrics(font, fm.stringWidth(message), fm.getHeight(), fm.getAscent());
+            cache.put(key, m);
+            return m;
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static final class Key {
+        private final String fontName;
+        private final int style;
+        private final int size;
+        private final String message;
+
+        Key(String fontName, int style, int size, String message) {
+            this.fontName = fontName;
+            this.style = style;
+            this.size = size;
+            this.message = message;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return style == k.style && size == k.size && fontName.equals(k.fontName) && message.equals(k.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fontName, style, size, message);
+        }
+    }
+}
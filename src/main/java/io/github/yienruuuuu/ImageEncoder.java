@@ -0,0 +1,50 @@
+package io.github.yienruuuuu;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 隱碼結果的輸出編碼器。輸出必須是無損格式，才能保住每個通道的最低位元。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/25
+ */
+public interface ImageEncoder {
+    void write(BufferedImage image, WritableByteChannel out) throws IOException;
+
+    default void write(BufferedImage image, OutputStream out) throws IOException {
+        write(image, Channels.newChannel(out));
+    }
+
+    default void write(BufferedImage image, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(image, channel);
+        }
+    }
+
+    /**
+     * 預設使用多核心平行壓縮的 {@link PngEncoder}
+     */
+    static ImageEncoder defaultEncoder() {
+        return PngEncoder.DEFAULT;
+    }
+
+    /**
+     * 原本的 {@code ImageIO.write(..., "png", ...)}，保留作為比較基準
+     */
+    static ImageEncoder imageIO() {
+        return (image, out) -> {
+            if (!ImageIO.write(image, "png", Channels.newOutputStream(out))) {
+                throw new IOException("找不到 PNG writer");
+            }
+        };
+    }
+}
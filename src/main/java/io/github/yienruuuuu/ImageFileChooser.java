@@ -6,7 +6,7 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import javax.imageio.ImageIO;
+import java.util.concurrent.ExecutionException;
 
 /**
  * @author Eric.Lee
@@ -58,11 +58,14 @@ public class ImageFileChooser {
     }
 }
 
-// 圖片預覽面板
+// 圖片預覽面板：縮圖在背景執行緒以取樣方式解碼，結果依檔案路徑 + 修改時間快取
 class ImagePreviewPanel extends JPanel {
+    private static final ThumbnailCache THUMBNAILS = new ThumbnailCache(64);
+
     private JLabel imageLabel;
     private int previewWidth = 150;  // 預覽圖寬度
     private int previewHeight = 150; // 預覽圖高度
+    private SwingWorker<BufferedImage, Void> pending;
 
     public ImagePreviewPanel() {
         setLayout(new BorderLayout());
@@ -73,22 +76,52 @@ class ImagePreviewPanel extends JPanel {
         setBorder(BorderFactory.createTitledBorder("圖片預覽"));
     }
 
+    /**
+     * 在 EDT 上呼叫；快取中沒有的縮圖交給背景執行緒解碼，選取變更時取消上一個還沒完成的解碼
+     */
     public void loadImage(File file) {
-        if (file == null || !file.exists()) {
-            imageLabel.setIcon(null);
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+        if (file == null || !file.isFile()) {
+            show(null);
             return;
         }
-        try {
-            BufferedImage img = ImageIO.read(file);
-            if (img != null) {
-                // 產生縮圖
-                Image scaledImg = img.getScaledInstance(previewWidth, previewHeight, Image.SCALE_SMOOTH);
-                imageLabel.setIcon(new ImageIcon(scaledImg));
-            } else {
-                imageLabel.setIcon(null);
-            }
-        } catch (IOException e) {
-            imageLabel.setIcon(null);
+        BufferedImage cached = THUMBNAILS.getIfPresent(file, previewWidth, previewHeight);
+        if (cached != null) {
+            show(cached);
+            return;
         }
+
+        imageLabel.setIcon(null);
+        imageLabel.setText("載入中…");
+        SwingWorker<BufferedImage, Void> worker = new SwingWorker<>() {
+            @Override
+            protected BufferedImage doInBackground() throws IOException {
+                return THUMBNAILS.get(file, previewWidth, previewHeight);
+            }
+
+            @Override
+            protected void done() {
+                // 已經換選別的檔案時直接丟掉結果
+                if (isCancelled() || pending != this) {
+                    return;
+                }
+                pending = null;
+                try {
+                    show(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    show(null);
+                }
+            }
+        };
+        pending = worker;
+        worker.execute();
+    }
+
+    private void show(BufferedImage thumbnail) {
+        imageLabel.setText(null);
+        imageLabel.setIcon(thumbnail == null ? null : new ImageIcon(thumbnail));
     }
 }
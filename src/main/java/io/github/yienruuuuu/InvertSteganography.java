@@ -4,165 +4,198 @@ import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Eric.Lee
  * Date: 2025/3/18
  */
 public class InvertSteganography {
+    private static final String FONT_NAME = "LXGW WenKai TC Bold";
+    private static final FontFitter FONT_FITTER = new FontFitter(256);
+
+    /**
+     * 欲放置文字的區域寬高
+     */
+    static final int REGION_WIDTH = 200;
+    static final int REGION_HEIGHT = 50;
+    /**
+     * 當像素平均值大於此，視為「接近白色」
+     */
+    static final int WHITE_THRESHOLD = 220;
+    /**
+     * 判斷白色區域足以放文字的最低像素數量
+     */
+    static final int MIN_WHITE_AREA = 5000;
+    static final String DEFAULT_MESSAGE = "我是隱藏訊息";
+
+    /**
+     * 繪製結果：複製原圖後的 ARGB 圖片、選中的區域，以及實際使用的字型大小 (沒有繪製文字時為 0)
+     */
+    static final class Rendering {
+        private final BufferedImage image;
+        private final RegionPlacer.Placement region;
+        private final int fontSize;
+
+        Rendering(BufferedImage image, RegionPlacer.Placement region, int fontSize) {
+            this.image = image;
+            this.region = region;
+            this.fontSize = fontSize;
+        }
 
-    public static void main(String[] args) {
-        try {
-            // 1. 讀取原始圖片
-            File inputFile = new File("./pic/in/1.png");
-            BufferedImage originalImg = ImageIO.read(inputFile);
-            int width = originalImg.getWidth();
-            int height = originalImg.getHeight();
-
-            // 2. 設定搜尋參數
-            int regionWidth = 200;      // 欲放置文字的區域寬
-            int regionHeight = 50;      // 欲放置文字的區域高
-            int whiteThreshold = 220;   // 當像素平均值大於此，視為「接近白色」
-            int minWhiteArea = 5000;    // 判斷白色區域足以放文字的最低像素數量
-
-            // 3. 建立「是否為白色像素」的二維陣列：值為 1 表示該像素算白，0 表示不算
-            int[][] whiteMap = new int[width][height];
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    Color color = new Color(originalImg.getRGB(x, y));
-                    int avg = (color.getRed() + color.getGreen() + color.getBlue()) / 3;
-                    whiteMap[x][y] = (avg > whiteThreshold) ? 1 : 0;
-                }
-            }
-
-            // 4. 建立積分圖 (Integral Image)，以快速計算任意區域的白像素總和
-            //    為了方便計算邊界，積分圖建議用 (width+1) x (height+1) 大小，從 (1,1) 開始存實際值
-            int[][] integral = new int[width + 1][height + 1];
-            for (int y = 1; y <= height; y++) {
-                for (int x = 1; x <= width; x++) {
-                    integral[x][y] = whiteMap[x - 1][y - 1]
-                            + integral[x - 1][y]
-                            + integral[x][y - 1]
-                            - integral[x - 1][y - 1];
-                }
-            }
-
-            // 5. 使用積分圖，找出白像素總數最大的區域
-            int bestX = 0, bestY = 0;
-            int maxWhiteArea = 0;
-
-            // 全面掃描 (x, y)；也可以改成多層 for 迴圈來加速，但這裡示範完整搜尋
-            for (int y = 0; y <= height - regionHeight; y++) {
-                for (int x = 0; x <= width - regionWidth; x++) {
-                    // 計算 [x, y] ~ [x+regionWidth-1, y+regionHeight-1] 的白像素總數
-                    int x2 = x + regionWidth;
-                    int y2 = y + regionHeight;
-                    // 透過積分圖做快速計算
-                    int whiteSum = integral[x2][y2]
-                            - integral[x][y2]
-                            - integral[x2][y]
-                            + integral[x][y];
-
-                    if (whiteSum > maxWhiteArea) {
-                        maxWhiteArea = whiteSum;
-                        bestX = x;
-                        bestY = y;
-                    }
-                }
-            }
-
-            // 6. 如果找到的最大白像素數量足夠，則嘗試在該區域繪製文字
-            BufferedImage hiddenImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-            // 先複製原圖到新的 BufferedImage，保留原圖內容
-            Graphics2D gHidden = hiddenImg.createGraphics();
-            gHidden.drawImage(originalImg, 0, 0, null);
-
-            if (maxWhiteArea > minWhiteArea) {
-                System.out.println("✅ 找到偏白區塊，將訊息放置於: (" + bestX + ", " + bestY + ")，白色像素數：" + maxWhiteArea);
+        BufferedImage getImage() {
+            return image;
+        }
 
-                String message = "我是隱藏訊息";
+        RegionPlacer.Placement getRegion() {
+            return region;
+        }
 
-                // (a) 先嘗試一個最大字型大小
-                int maxFontSize = 120;
-                int minFontSize = 10; // 可以自訂最小字型
-                int fontSize = maxFontSize;
+        int getFontSize() {
+            return fontSize;
+        }
 
-                // 建立暫時用來量測文字大小的 Graphics2D（不直接在 hiddenImg 上操作）
-                BufferedImage tmp = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D gTmp = tmp.createGraphics();
+        /**
+         * 白色區域是否足以放文字
+         */
+        boolean hasRegion() {
+            return region.getWhiteCount() > MIN_WHITE_AREA;
+        }
 
-                // (b) 不斷嘗試從 maxFontSize 往下減，直到文字寬高可放入 regionWidth x regionHeight
-                while (fontSize >= minFontSize) {
-                    Font font = new Font("Arial", Font.BOLD, fontSize);
-                    FontMetrics fm = gTmp.getFontMetrics(font);
-                    int textWidth = fm.stringWidth(message);
-                    int textHeight = fm.getHeight(); // 包含上升(ascent)與下降(descent)
+        boolean isDrawn() {
+            return fontSize > 0;
+        }
+    }
 
-                    // 若寬高都能放進指定區域，就可以停止了
-                    if (textWidth <= regionWidth && textHeight <= regionHeight) {
-                        break;
-                    }
-                    fontSize--;
-                }
-                gTmp.dispose(); // 不再需要暫時 Graphics
+    public static void main(String[] args) {
+        try {
+            // 1. 讀取原始圖片
+            File inputFile = new File("./pic/in/1.png");
+            BufferedImage originalImg;
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+                originalImg = ImageIO.read(inputFile);
+            }
 
-                if (fontSize < minFontSize) {
+            // 2~6. 找出偏白區塊並以極低透明度繪製文字
+            Rendering rendering = render(originalImg, DEFAULT_MESSAGE);
+            RegionPlacer.Placement best = rendering.getRegion();
+            if (rendering.hasRegion()) {
+                System.out.println("✅ 找到偏白區塊，將訊息放置於: (" + best.getX() + ", " + best.getY() + ")，白色像素數：" + best.getWhiteCount());
+                if (!rendering.isDrawn()) {
                     System.out.println("⚠️ 找不到適合的字型大小，無法繪製文字。");
                     return;
-                } else {
-                    // (c) 使用找到的字型大小，在 hiddenImg 上實際繪製文字
-                    Font finalFont = new Font("LXGW WenKai TC Bold", Font.BOLD, fontSize);
-                    gHidden.setFont(finalFont);
-
-                    // 取得字體量測，用來計算垂直置中
-                    FontMetrics fm = gHidden.getFontMetrics(finalFont);
-                    int textWidth = fm.stringWidth(message);
-                    int textHeight = fm.getHeight();
-
-                    // 計算置中位置 (讓文字置中到該區域)
-                    int drawX = bestX + (regionWidth - textWidth) / 2;
-                    // 注意字元繪製時，Y 座標其實是 baseline
-                    int drawY = bestY + (regionHeight - textHeight) / 2 + fm.getAscent();
-
-                    // (d) 設定透明度
-                    float alphaValue = 0.02f; // 5% (你也可改成 0.04f = 4%)
-                    gHidden.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alphaValue));
-                    gHidden.setColor(Color.BLACK);
-                    gHidden.drawString(message, drawX, drawY);
-
-                    System.out.println("✅ 文字已繪製於指定區域，實際字型大小：" + fontSize);
                 }
+                System.out.println("✅ 文字已繪製於指定區域，實際字型大小：" + rendering.getFontSize());
             } else {
                 System.out.println("⚠️ 沒有足夠大的白色區塊來放置隱藏訊息！");
             }
-
-            gHidden.dispose();
+            BufferedImage hiddenImg = rendering.getImage();
 
             // 7. 儲存帶有隱藏訊息的圖片 (ARGB -> PNG)
             File hiddenFile = new File("./pic/out/hidden_message.png");
-            ImageIO.write(hiddenImg, "png", hiddenFile);
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.ENCODE)) {
+                ImageEncoder.defaultEncoder().write(hiddenImg, hiddenFile.toPath());
+            }
             System.out.println("✅ 隱碼圖片已生成：hidden_message.png");
 
             // 8. 產生負片版本（示範：以含隱藏文字的版本來做負片）
-            BufferedImage negativeImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    Color color = new Color(hiddenImg.getRGB(x, y), true);
-                    // 取反 (負片)
-                    int r = 255 - color.getRed();
-                    int g = 255 - color.getGreen();
-                    int b = 255 - color.getBlue();
-                    Color negColor = new Color(r, g, b);
-                    negativeImg.setRGB(x, y, negColor.getRGB());
-                }
-            }
+            BufferedImage negativeImg = toNegative(hiddenImg);
 
             File negativeFile = new File("./pic/out/negative_message.png");
-            ImageIO.write(negativeImg, "png", negativeFile);
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.ENCODE)) {
+                ImageEncoder.defaultEncoder().write(negativeImg, negativeFile.toPath());
+            }
             System.out.println("✅ 負片圖片已生成：negative_message.png");
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 把原圖複製成 ARGB，在白像素最多的區域以極低透明度畫上 message；
+     * 白色區域不夠大或找不到適合的字型大小時只回傳複製的原圖
+     */
+    static Rendering render(BufferedImage originalImg, String message) {
+        int width = originalImg.getWidth();
+        int height = originalImg.getHeight();
+
+        // 3~5. 以滑動視窗逐列掃描，找出白像素總數最大的區域 (記憶體只與區域高度成正比，見 placeText)
+        RegionPlacer.Placement best = placeText(originalImg, REGION_WIDTH, REGION_HEIGHT, WHITE_THRESHOLD);
+
+        // 6. 如果找到的最大白像素數量足夠，則嘗試在該區域繪製文字
+        BufferedImage hiddenImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        // 先複製原圖到新的 BufferedImage，保留原圖內容
+        Graphics2D gHidden = hiddenImg.createGraphics();
+        try {
+            gHidden.drawImage(originalImg, 0, 0, null);
+            if (best.getWhiteCount() <= MIN_WHITE_AREA) {
+                return new Rendering(hiddenImg, best, 0);
+            }
+
+            // (a)~(b) 以二分搜尋找出寬高都能放入 REGION_WIDTH x REGION_HEIGHT 的最大字型，
+            //         量測與繪製使用同一個字型，結果會被快取，同一段文字只需量測一次
+            int maxFontSize = 120;
+            int minFontSize = 10; // 可以自訂最小字型
+            FontFitter.Metrics fit;
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.FONT_FIT)) {
+                fit = FONT_FITTER.fit(FONT_NAME, Font.BOLD, message,
+                        REGION_WIDTH, REGION_HEIGHT, minFontSize, maxFontSize);
+            }
+            if (fit == null) {
+                return new Rendering(hiddenImg, best, 0);
+            }
+
+            // (c) 使用找到的字型大小，在 hiddenImg 上實際繪製文字
+            gHidden.setFont(fit.getFont());
+
+            // 計算置中位置 (讓文字置中到該區域)
+            int drawX = best.getX() + (REGION_WIDTH - fit.getWidth()) / 2;
+            // 注意字元繪製時，Y 座標其實是 baseline
+            int drawY = best.getY() + (REGION_HEIGHT - fit.getHeight()) / 2 + fit.getAscent();
+
+            // (d) 設定透明度
+            float alphaValue = 0.02f; // 5% (你也可改成 0.04f = 4%)
+            gHidden.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alphaValue));
+            gHidden.setColor(Color.BLACK);
+            gHidden.drawString(message, drawX, drawY);
+            return new Rendering(hiddenImg, best, fit.getFontSize());
+        } finally {
+            gHidden.dispose();
+        }
+    }
+
+    /**
+     * 找出白像素最多的 regionWidth × regionHeight 區域；圖片比區域小時回傳 (0, 0) 且白像素數為 0。
+     * 只有一種大小、一個位置，用不需要整張遮罩的 {@link WhiteRegionFinder}；
+     * 同一張圖要查詢多種大小或多個不重疊的位置時改用 {@link #placeTexts}
+     */
+    static RegionPlacer.Placement placeText(BufferedImage image, int regionWidth, int regionHeight, int whiteThreshold) {
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.REGION_SEARCH)) {
+            WhiteRegionFinder.Region best = new WhiteRegionFinder(regionWidth, regionHeight, whiteThreshold)
+                    .find(PixelRowSource.of(image), Runtime.getRuntime().availableProcessors());
+            return new RegionPlacer.Placement(best.getX(), best.getY(), regionWidth, regionHeight, best.getWhiteCount());
+        }
+    }
+
+    /**
+     * 對每一種區域大小各找出最多 topK 個互不重疊、白像素最多的位置，整張圖只掃描一次；
+     * 批次處理先取得候選位置再決定文字要畫在哪裡，結果依 sizes 的順序排列
+     */
+    public static Map<Dimension, List<RegionPlacer.Placement>> placeTexts(BufferedImage image, List<Dimension> sizes,
+                                                                          int topK) {
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.REGION_SEARCH)) {
+            return new RegionPlacer(WHITE_THRESHOLD).place(image, sizes, topK);
+        }
+    }
+
+    /**
+     * 產生負片：RGB 取反，輸出為 TYPE_INT_RGB
+     */
+    static BufferedImage toNegative(BufferedImage source) {
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.NEGATIVE)) {
+            return PixelKernels.negative(source);
+        }
+    }
+}
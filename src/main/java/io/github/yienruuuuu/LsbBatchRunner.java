@@ -0,0 +1,304 @@
+package io.github.yienruuuuu;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 整批 NFT 圖片的 LSB 隱碼工具。
+ * <p>
+ * 依照 manifest 把每張圖對應的訊息藏進去，decode → embed → PNG encode 在固定大小的執行緒池中並行，
+ * 並以 semaphore 限制同時在記憶體中的圖片數量，讓 heap 用量不隨 collection 大小成長。
+ * 已經寫出的輸出檔會被跳過，所以中斷後重新執行即可接續。
+ * 每張圖解碼前先以 {@link CapacityPlanner} 讀檔頭檢查容量，放不下的訊息不會浪費解碼時間。
+ * <p>
+ * manifest 為 UTF-8 文字檔，每行 {@code 檔名<TAB>訊息}，空行與 {@code #} 開頭的行會被忽略。
+ * 檔名是輸入資料夾內的相對路徑 (可以有子資料夾，但不能以 {@code ..} 指到資料夾外)，
+ * 輸出檔名把副檔名換成 .png，因此 {@code a.jpg} 與 {@code a.png} 不能出現在同一份 manifest。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/8
+ */
+public class LsbBatchRunner {
+    private static final String PART_SUFFIX = ".part";
+    /**
+     * 各階段耗時的 JSON 摘要，寫在輸出資料夾中
+     */
+    private static final String METRICS_FILE = "stage-metrics.json";
+
+    private final Path inputDir;
+    private final Path outputDir;
+    private final int threads;
+    private final int maxInFlight;
+    private final ImageEncoder encoder;
+    private final CapacityPlanner planner;
+
+    public LsbBatchRunner(Path inputDir, Path outputDir, int threads, int maxInFlight) {
+        // 每張圖已經各佔一條執行緒，PNG 壓縮就不再切段平行，避免搶同一批核心
+        this(inputDir, outputDir, threads, maxInFlight, new PngEncoder(4, PngEncoder.Filter.ADAPTIVE, 1));
+    }
+
+    public LsbBatchRunner(Path inputDir, Path outputDir, int threads, int maxInFlight, ImageEncoder encoder) {
+        this(inputDir, outputDir, threads, maxInFlight, encoder, CapacityPlanner.strict(LsbOptions.legacy()));
+    }
+
+    /**
+     * @param planner 決定每張圖使用的模式，例如 {@link CapacityPlanner#forBase(LsbOptions)} 會讓放不下的訊息改用容量較大的模式
+     */
+    public LsbBatchRunner(Path inputDir, Path outputDir, int threads, int maxInFlight, ImageEncoder encoder,
+                          CapacityPlanner planner) {
+        if (threads < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("threads 與 maxInFlight 必須大於 0");
+        }
+        this.inputDir = inputDir;
+        this.outputDir = outputDir;
+        this.threads = threads;
+        this.maxInFlight = maxInFlight;
+        this.encoder = encoder;
+        this.planner = planner;
+    }
+
+    /**
+     * manifest 中的一筆工作
+     */
+    public static final class Job {
+        private final String fileName;
+        private final String message;
+
+        public Job(String fileName, String message) {
+            this.fileName = fileName;
+            this.message = message;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * 整批執行的統計結果
+     */
+    public static final class Report {
+        private final int written;
+        private final int skipped;
+        private final int failed;
+        private final long elapsedNanos;
+
+        Report(int written, int skipped, int failed, long elapsedNanos) {
+            this.written = written;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getWritten() {
+            return written;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public double getImagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : written * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("寫出 %d 張，略過 %d 張，失敗 %d 張，耗時 %.1f 秒，%.2f images/sec",
+                    written, skipped, failed, elapsedNanos / 1_000_000_000.0, getImagesPerSecond());
+        }
+    }
+
+    /**
+     * 讀取 manifest，每行 {@code 檔名<TAB>訊息}；檔名指到資料夾外或兩行會寫到同一個輸出檔時整份拒絕
+     */
+    public static List<Job> readManifest(Path manifest) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        Map<Path, Integer> outputs = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    throw new IOException("manifest 第 " + lineNo + " 行格式錯誤，應為「檔名<TAB>訊息」");
+                }
+                Job job = new Job(line.substring(0, tab), line.substring(tab + 1));
+                Path output;
+                try {
+                    output = outputPath(job.fileName);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("manifest 第 " + lineNo + " 行：" + e.getMessage());
+                }
+                Integer previous = outputs.putIfAbsent(output, lineNo);
+                if (previous != null) {
+                    throw new IOException("manifest 第 " + lineNo + " 行與第 " + previous + " 行會輸出到同一個檔案 " + output);
+                }
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * 輸出檔名一律為原檔名去掉副檔名後加上 .png
+     */
+    static String outputName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return (dot > 0 ? fileName.substring(0, dot) : fileName) + ".png";
+    }
+
+    /**
+     * 去掉 {@code .} 與 {@code ..} 後的相對路徑；絕對路徑或指到資料夾外時丟出 IllegalArgumentException
+     */
+    static Path relativePath(String fileName) {
+        Path path = Paths.get(fileName).normalize();
+        if (path.getRoot() != null || path.toString().isEmpty() || path.startsWith("..")) {
+            throw new IllegalArgumentException("檔名必須是資料夾內的相對路徑：" + fileName);
+        }
+        return path;
+    }
+
+    private static Path outputPath(String fileName) {
+        return relativePath(outputName(relativePath(fileName).toString()));
+    }
+
+    /**
+     * 開始前先檢查整批工作，有問題就一張都不處理
+     */
+    static void checkJobs(List<Job> jobs) {
+        Map<Path, Job> outputs = new HashMap<>();
+        for (Job job : jobs) {
+            Job previous = outputs.putIfAbsent(outputPath(job.fileName), job);
+            if (previous != null) {
+                throw new IllegalArgumentException("「" + previous.fileName + "」與「" + job.fileName
+                        + "」會輸出到同一個檔案 " + outputPath(job.fileName));
+            }
+        }
+    }
+
+    public Report run(List<Job> jobs) throws IOException, InterruptedException {
+        checkJobs(jobs);
+        Files.createDirectories(outputDir);
+
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        long start = System.nanoTime();
+        try {
+            for (Job job : jobs) {
+                Path target = outputDir.resolve(outputPath(job.fileName));
+                // 已完成的輸出直接略過 (只有完整寫完的檔案才會出現在正式檔名)
+                if (Files.exists(target)) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        process(job, inputDir.resolve(relativePath(job.fileName)), target);
+                        written.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        StageMetrics.failure(StageMetrics.EMBED, e);
+                        System.err.println("⚠️ 處理失敗：" + job.fileName + " - " + e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        return new Report(written.get(), skipped.get(), failed.get(), System.nanoTime() - start);
+    }
+
+    private void process(Job job, Path source, Path target) throws IOException {
+        CapacityPlanner.Plan plan = planner.plan(source, job.message);
+        if (plan.getStatus() == CapacityPlanner.Status.UNREADABLE) {
+            throw new IOException("無法讀取圖片：" + plan.getError());
+        }
+        if (!plan.fits()) {
+            throw new IllegalArgumentException("圖片容量不足以藏這段訊息：" + plan);
+        }
+
+        BufferedImage image;
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+            image = ImageIO.read(source.toFile());
+        }
+        if (image == null) {
+            throw new IOException("無法讀取圖片");
+        }
+        BufferedImage stegoImage = LsbTool.hideTextInImageLSB(image, job.message, plan.getOptions());
+
+        // 先寫到暫存檔再搬移，避免中斷時留下不完整的輸出被下次當成已完成
+        Files.createDirectories(target.getParent());
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        try {
+            // PNG 是一邊壓縮一邊寫入暫存檔，encode 已包含寫檔；write 只剩搬移到正式檔名
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.ENCODE)) {
+                encoder.write(stegoImage, part);
+            }
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.WRITE)) {
+                Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("用法: LsbBatchRunner <輸入資料夾> <manifest> <輸出資料夾> [執行緒數] [同時處理上限]");
+            return;
+        }
+        try {
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            int maxInFlight = args.length > 4 ? Integer.parseInt(args[4]) : threads * 2;
+
+            StageRecorder recorder = StageMetrics.createDefault();
+            StageMetrics.install(recorder);
+
+            Path outputDir = Paths.get(args[2]);
+            LsbBatchRunner runner = new LsbBatchRunner(Paths.get(args[0]), outputDir, threads, maxInFlight);
+            Report report = runner.run(readManifest(Paths.get(args[1])));
+            System.out.println("✅ " + report);
+            recorder.writeSummary(outputDir.resolve(METRICS_FILE));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.yienruuuuu;
+
+/**
+ * 一個像素要藏幾個 bit、藏在哪些通道的配置。
+ * <p>
+ * 每個通道取最低 bitsPerChannel 個 bit，依 R→G→B(→A) 順序串接，
+ * 所以 1 bit、不用 alpha 時與原本 {@link LsbTool} 的格式完全一致。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/29
+ */
+final class LsbMode {
+    /**
+     * 原本的格式：R、G、B 各 1 bit
+     */
+    static final LsbMode LEGACY = new LsbMode(1, false);
+
+    private final int bitsPerChannel;
+    private final boolean alpha;
+    private final int bitsPerPixel;
+    private final int channelMask;
+    private final int pixelMask;
+
+    LsbMode(int bitsPerChannel, boolean alpha) {
+        if (bitsPerChannel < 1 || bitsPerChannel > 4) {
+            throw new IllegalArgumentException("每個通道只能藏 1~4 bits");
+        }
+        this.bitsPerChannel = bitsPerChannel;
+        this.alpha = alpha;
+        this.bitsPerPixel = bitsPerChannel * (alpha ? 4 : 3);
+        this.channelMask = (1 << bitsPerChannel) - 1;
+        this.pixelMask = spread((1 << bitsPerPixel) - 1);
+    }
+
+    int getBitsPerChannel() {
+        return bitsPerChannel;
+    }
+
+    boolean usesAlpha() {
+        return alpha;
+    }
+
+    int getBitsPerPixel() {
+        return bitsPerPixel;
+    }
+
+    /**
+     * 像素中會被改寫的位元
+     */
+    int getPixelMask() {
+        return pixelMask;
+    }
+
+    /**
+     * 前 n 個 bit (依 R→G→B→A 順序) 在像素中的位置，用於最後一個只寫一部分的像素
+     */
+    int leadingMask(int n) {
+        return spread(((1 << n) - 1) << (bitsPerPixel - n));
+    }
+
+    /**
+     * 把 bitsPerPixel 個 bit (MSB 為 R 通道) 分散到 ARGB 各通道的最低位元
+     */
+    int spread(int bits) {
+        int k = bitsPerChannel;
+        int m = channelMask;
+        int shift = bitsPerPixel;
+        int value = ((bits >>> (shift -= k)) & m) << 16;
+        value |= ((bits >>> (shift -= k)) & m) << 8;
+        value |= (bits >>> (shift -= k)) & m;
+        if (alpha) {
+            value |= ((bits >>> (shift - k)) & m) << 24;
+        }
+        return value;
+    }
+
+    /**
+     * {@link #spread} 的反向：從 ARGB 各通道取出最低位元並串接
+     */
+    int gather(int argb) {
+        int k = bitsPerChannel;
+        int m = channelMask;
+        int bits = (argb >>> 16) & m;
+        bits = (bits << k) | ((argb >>> 8) & m);
+        bits = (bits << k) | (argb & m);
+        if (alpha) {
+            bits = (bits << k) | ((argb >>> 24) & m);
+        }
+        return bits;
+    }
+}
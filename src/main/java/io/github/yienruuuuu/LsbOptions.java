@@ -0,0 +1,130 @@
+package io.github.yienruuuuu;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 隱碼模式設定。
+ * <p>
+ * 預設值 ({@link #legacy()}) 寫出與舊版完全相同的格式；其他設定會在長度前綴中記錄模式旗標，
+ * 解碼端讀到旗標就會自動切換，不需要另外告知。
+ * <p>
+ * 設定金鑰 ({@link #withKey(String)}) 時，長度前綴與訊息會依金鑰分散到整張圖的像素上，
+ * 解碼時必須提供同一把金鑰。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/29
+ */
+public final class LsbOptions {
+    private static final LsbOptions LEGACY = new LsbOptions(1, false, false, false, null);
+
+    private final int bitsPerChannel;
+    private final boolean useAlpha;
+    private final boolean compress;
+    private final boolean errorCorrection;
+    private final byte[] key;
+
+    private LsbOptions(int bitsPerChannel, boolean useAlpha, boolean compress, boolean errorCorrection, byte[] key) {
+        if (bitsPerChannel < 1 || bitsPerChannel > 4) {
+            throw new IllegalArgumentException("每個通道只能藏 1~4 bits");
+        }
+        this.bitsPerChannel = bitsPerChannel;
+        this.useAlpha = useAlpha;
+        this.compress = compress;
+        this.errorCorrection = errorCorrection;
+        this.key = key;
+    }
+
+    /**
+     * R、G、B 各 1 bit，不寫模式旗標，與舊版格式相容
+     */
+    public static LsbOptions legacy() {
+        return LEGACY;
+    }
+
+    /**
+     * 每個通道藏 1~4 bits
+     */
+    public LsbOptions withBitsPerChannel(int bitsPerChannel) {
+        return new LsbOptions(bitsPerChannel, useAlpha, compress, errorCorrection, key);
+    }
+
+    /**
+     * 是否連 alpha 通道也拿來藏資料
+     */
+    public LsbOptions withAlpha(boolean useAlpha) {
+        return new LsbOptions(bitsPerChannel, useAlpha, compress, errorCorrection, key);
+    }
+
+    /**
+     * 藏入前先以 deflate 壓縮訊息；壓縮後沒有變小時會自動改存原始內容
+     */
+    public LsbOptions withCompression(boolean compress) {
+        return new LsbOptions(bitsPerChannel, useAlpha, compress, errorCorrection, key);
+    }
+
+    /**
+     * 以 RS(255,223) 保護訊息內容 (每 223 bytes 可更正 16 個錯誤 byte)，長度前綴也會寫三份以多數決還原，
+     * 讓圖片被重新存檔造成少量 LSB 翻轉時仍能取出訊息；代價是容量約少 13%
+     */
+    public LsbOptions withErrorCorrection(boolean errorCorrection) {
+        return new LsbOptions(bitsPerChannel, useAlpha, compress, errorCorrection, key);
+    }
+
+    /**
+     * 以密語決定像素的寫入順序，讓訊息分散在整張圖上；null 或空字串代表依 raster 順序寫入
+     */
+    public LsbOptions withKey(String passphrase) {
+        return new LsbOptions(bitsPerChannel, useAlpha, compress, errorCorrection, deriveKey(passphrase));
+    }
+
+    /**
+     * 密語的 SHA-256 摘要，作為 {@link PixelPermutation} 的金鑰
+     */
+    static byte[] deriveKey(String passphrase) {
+        if (passphrase == null || passphrase.isEmpty()) {
+            return null;
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(passphrase.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getBitsPerChannel() {
+        return bitsPerChannel;
+    }
+
+    public boolean isUseAlpha() {
+        return useAlpha;
+    }
+
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public boolean isErrorCorrection() {
+        return errorCorrection;
+    }
+
+    public boolean isKeyed() {
+        return key != null;
+    }
+
+    byte[] key() {
+        return key;
+    }
+
+    /**
+     * 是否需要在長度前綴中寫入模式旗標 (也就是不是舊版格式)
+     */
+    boolean isExtended() {
+        return bitsPerChannel != 1 || useAlpha || compress || errorCorrection;
+    }
+
+    LsbMode mode() {
+        return isExtended() ? new LsbMode(bitsPerChannel, useAlpha) : LsbMode.LEGACY;
+    }
+}
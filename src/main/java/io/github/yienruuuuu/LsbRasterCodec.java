@@ -0,0 +1,929 @@
+package io.github.yienruuuuu;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 直接存取 Raster 底層陣列的 LSB 編解碼核心。
+ * <p>
+ * 預設格式與原本 {@link LsbTool} 完全相同：4 bytes big-endian 長度前綴 + 訊息內容，
+ * 依 R→G→B 順序每個通道藏 1 bit。整個迴圈不建立任何逐像素物件（沒有 {@link Color}、沒有 int[3]）。
+ * <p>
+ * 長度前綴一律以舊格式寫在前 11 個像素。舊格式的長度不可能超過 2^30，所以借用 bit30 當作「擴充模式」旗標：
+ * <pre>
+ * bit 31     必為 0
+ * bit 30     1 = 擴充模式 (0 時整個 int 就是舊格式的長度)
+ * bit 29-28  每個通道藏的 bit 數 - 1
+ * bit 27     是否使用 alpha 通道
+ * bit 26-25  壓縮方式，00 = 未壓縮、01 = deflate (zlib 格式)，其餘保留
+ * bit 24     是否以 {@link ReedSolomon} 編碼 (ECC)
+ * bit 23-0   訊息長度 (bytes，壓縮時為壓縮後長度，不含 ECC 同位元)
+ * </pre>
+ * 擴充模式的訊息內容從第 12 個像素開始，依 {@link LsbMode} 的排列方式寫入。
+ * ECC 模式的長度前綴會以舊格式連續寫三份 (前 32 個像素)，解碼時逐 bit 多數決，訊息內容從第 33 個像素開始。
+ * 不論哪一種模式，長度都必須在圖片容量之內才會被接受。
+ * 有金鑰時「第 i 個像素」改為 {@link PixelPermutation} 對應到的位置，格式本身不變。
+ * 壓縮過的訊息在解碼時一邊收集 bit 一邊解壓縮，不必先湊齊整段壓縮資料。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/2
+ */
+final class LsbRasterCodec {
+    /**
+     * 長度前綴佔用的 bit 數
+     */
+    static final int HEADER_BITS = 32;
+    /**
+     * 長度前綴佔用的像素數 (舊格式每像素 3 bits，最後一個像素多出的 1 bit 在舊格式中接著放訊息)
+     */
+    static final int HEADER_PIXELS = (HEADER_BITS + 2) / 3;
+    /**
+     * ECC 模式三份長度前綴佔用的像素數 (3 × 32 bits，每像素 3 bits)
+     */
+    static final int ECC_HEADER_PIXELS = HEADER_BITS;
+    /**
+     * 擴充模式可記錄的最大訊息長度
+     */
+    static final int MAX_EXTENDED_LENGTH = 0xFFFFFF;
+    /**
+     * 解壓縮後的長度上限，避免惡意圖片以極小的壓縮資料撐爆記憶體
+     */
+    static final int MAX_INFLATED_LENGTH = 256 * 1024 * 1024;
+
+    /**
+     * 有金鑰時每次依排列順序收集多少個像素再交給 encoder
+     */
+    private static final int SCATTER_CHUNK = 4096;
+
+    private static final int EXTENDED_FLAG = 1 << 30;
+    private static final int COMPRESSION_MASK = 0x06000000;
+    private static final int COMPRESSION_DEFLATE = 0x02000000;
+    private static final int ECC_FLAG = 0x01000000;
+
+    private LsbRasterCodec() {
+    }
+
+    /**
+     * 逐像素走訪時的回呼，回傳 true 表示已經不需要再讀下去
+     */
+    interface PixelVisitor {
+        boolean visit(int argb);
+    }
+
+    /**
+     * 指定模式下圖片最多可以藏多少 bytes 的訊息內容 (已扣除長度前綴)；連長度前綴都放不下時回傳 -1
+     */
+    static long payloadCapacity(int width, int height, LsbOptions options) {
+        // 壓縮率取決於內容，這裡回傳的是實際寫入 (壓縮後) 的容量
+        return capacity((long) width * height, options.isExtended(), options.isErrorCorrection(), options.mode());
+    }
+
+    private static long capacity(long pixels, boolean extended, boolean ecc, LsbMode mode) {
+        int headerPixels = ecc ? ECC_HEADER_PIXELS : HEADER_PIXELS;
+        if (pixels < headerPixels) {
+            return -1;
+        }
+        if (!extended) {
+            return (pixels * 3 - HEADER_BITS) / 8;
+        }
+        long bytes = (pixels - headerPixels) * mode.getBitsPerPixel() / 8;
+        if (ecc) {
+            bytes = ReedSolomon.maxDataLength(bytes);
+        }
+        return Math.min(MAX_EXTENDED_LENGTH, bytes);
+    }
+
+    /**
+     * 以舊格式將 payload 藏入圖片，回傳新的 TYPE_INT_ARGB 圖片，原圖不變
+     */
+    static BufferedImage embed(BufferedImage image, byte[] payload) {
+        return embed(image, payload, LsbOptions.legacy());
+    }
+
+    /**
+     * 依指定模式將 payload 藏入圖片，回傳新的 TYPE_INT_ARGB 圖片，原圖不變
+     */
+    static BufferedImage embed(BufferedImage image, byte[] payload, LsbOptions options) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Encoder encoder = prepare(payload, options, width, height);
+
+        BufferedImage stegoImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.CONVERT)) {
+            Graphics2D g = stegoImage.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+        }
+
+        // 自己建立的 TYPE_INT_ARGB，scanline stride 必定等於 width 且 offset 為 0
+        int[] data = ((DataBufferInt) stegoImage.getRaster().getDataBuffer()).getData();
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.PACK)) {
+            if (options.isKeyed()) {
+                encodeScattered(data, encoder, new PixelPermutation(data.length, options.key()));
+            } else {
+                encoder.encode(data, 0, data.length);
+            }
+        }
+        return stegoImage;
+    }
+
+    /**
+     * 建立 encoder (壓縮、ECC 編碼) 並檢查容量，同時回報寫入量與容量使用率
+     */
+    private static Encoder prepare(byte[] payload, LsbOptions options, int width, int height) {
+        Encoder encoder;
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.COMPRESS)) {
+            encoder = new Encoder(payload, options);
+        }
+        encoder.checkCapacity(width, height);
+        StageMetrics.count(StageMetrics.IMAGES_EMBEDDED, 1);
+        StageMetrics.count(StageMetrics.BYTES_EMBEDDED, encoder.length);
+        StageMetrics.utilisation(encoder.length, payloadCapacity(width, height, encoder.options));
+        return encoder;
+    }
+
+    /**
+     * 依排列順序一次收集一小段像素交給 encoder，寫完再放回原位置，額外記憶體固定為 SCATTER_CHUNK
+     */
+    private static void encodeScattered(int[] data, Encoder encoder, PixelPermutation permutation) {
+        int needed = (int) encoder.pixelsNeeded();
+        int[] positions = new int[Math.min(needed, SCATTER_CHUNK)];
+        int[] pixels = new int[positions.length];
+        for (int i = 0; i < needed; i += positions.length) {
+            int n = Math.min(positions.length, needed - i);
+            for (int j = 0; j < n; j++) {
+                positions[j] = permutation.map(i + j);
+                pixels[j] = data[positions[j]];
+            }
+            encoder.encode(pixels, 0, n);
+            for (int j = 0; j < n; j++) {
+                data[positions[j]] = pixels[j];
+            }
+        }
+    }
+
+    /**
+     * 依指定模式將 payload 藏入逐列讀取的來源，原來源不變。
+     * <p>
+     * 只有前面被改寫的那幾列會複製到 heap (大小與訊息長度成正比)，其餘列直接轉讀原來源，
+     * 適合搭配 {@link MappedPixelImage} 處理放不進 heap 的大圖。
+     */
+    static PixelRowSource embed(PixelRowSource source, byte[] payload, LsbOptions options) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        Encoder encoder = prepare(payload, options, width, height);
+        boolean alpha = source.hasAlpha() || options.isUseAlpha();
+        if (options.isKeyed()) {
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.PACK)) {
+                return embedScattered(source, encoder, options.key(), alpha);
+            }
+        }
+
+        int rows = (int) Math.min(height, (encoder.pixelsNeeded() + width - 1) / width);
+        int[] head = new int[rows * width];
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.PACK)) {
+            int[] row = new int[width];
+            for (int y = 0; y < rows; y++) {
+                source.readRow(y, row);
+                System.arraycopy(row, 0, head, y * width, width);
+            }
+            encoder.encode(head, 0, head.length);
+        }
+
+        return new PixelRowSource() {
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public boolean hasAlpha() {
+                return alpha;
+            }
+
+            @Override
+            public void readRow(int y, int[] dst) {
+                if (y < rows) {
+                    System.arraycopy(head, y * width, dst, 0, width);
+                } else {
+                    source.readRow(y, dst);
+                }
+            }
+        };
+    }
+
+    /**
+     * 有金鑰時改寫的像素散落在整張圖，只保留被改寫的像素 (依位置排序) 並在讀取每一列時覆蓋上去
+     */
+    private static PixelRowSource embedScattered(PixelRowSource source, Encoder encoder, byte[] key, boolean alpha) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        PixelPermutation permutation = new PixelPermutation((long) width * height, key);
+        int needed = (int) encoder.pixelsNeeded();
+
+        // 高 32 bits 為像素位置、低 32 bits 為寫入順序，排序後可以逐列讀出原始像素
+        long[] order = new long[needed];
+        for (int i = 0; i < needed; i++) {
+            order[i] = (long) permutation.map(i) << 32 | i;
+        }
+        Arrays.sort(order);
+        int[] pixels = new int[needed];
+        int[] row = new int[width];
+        int loadedRow = -1;
+        for (long entry : order) {
+            int position = (int) (entry >>> 32);
+            int y = position / width;
+            if (y != loadedRow) {
+                source.readRow(y, row);
+                loadedRow = y;
+            }
+            pixels[(int) entry] = row[position - y * width];
+        }
+        encoder.encode(pixels, 0, needed);
+
+        int[] positions = new int[needed];
+        int[] values = new int[needed];
+        for (int i = 0; i < needed; i++) {
+            positions[i] = (int) (order[i] >>> 32);
+            values[i] = pixels[(int) order[i]];
+        }
+
+        return new PixelRowSource() {
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public boolean hasAlpha() {
+                return alpha;
+            }
+
+            @Override
+            public void readRow(int y, int[] dst) {
+                source.readRow(y, dst);
+                int start = y * width;
+                int i = Arrays.binarySearch(positions, start);
+                for (i = i < 0 ? -i - 1 : i; i < needed && positions[i] < start + width; i++) {
+                    dst[positions[i] - start] = values[i];
+                }
+            }
+        };
+    }
+
+    /**
+     * 擴充模式的 32-bit 長度前綴
+     */
+    static int header(LsbOptions options, int length) {
+        return EXTENDED_FLAG
+                | (options.getBitsPerChannel() - 1) << 28
+                | (options.isUseAlpha() ? 1 << 27 : 0)
+                | (options.isCompress() ? COMPRESSION_DEFLATE : 0)
+                | (options.isErrorCorrection() ? ECC_FLAG : 0)
+                | length;
+    }
+
+    /**
+     * 以 zlib 格式壓縮，尾端的 adler32 也順便用來確認解出來的內容沒有損毀
+     */
+    static byte[] deflate(byte[] payload) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            byte[] out = new byte[payload.length + payload.length / 1000 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 從圖片取出 payload，模式由長度前綴自動判斷；找不到合法的長度前綴時回傳 null
+     */
+    static byte[] extract(BufferedImage image) {
+        Decoder decoder = new Decoder(image.getWidth(), image.getHeight());
+        scan(image, decoder);
+        return decoder.result();
+    }
+
+    /**
+     * 以金鑰取出 payload；key 為 null 時等同 {@link #extract(BufferedImage)}
+     */
+    static byte[] extract(BufferedImage image, byte[] key) {
+        if (key == null) {
+            return extract(image);
+        }
+        int width = image.getWidth();
+        WritableRaster raster = image.getRaster();
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int stride = sm.getScanlineStride();
+            int base = raster.getDataBuffer().getOffset()
+                    + sm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+            return extractScattered(i -> data[base + (i / width) * stride + i % width], width, image.getHeight(), key);
+        }
+        return extractScattered(i -> image.getRGB(i % width, i / width), width, image.getHeight(), key);
+    }
+
+    /**
+     * 以金鑰從可隨機存取的像素 (raster 順序索引 → ARGB) 取出 payload，讀完訊息就停止
+     */
+    static byte[] extractScattered(IntUnaryOperator pixelAt, int width, int height, byte[] key) {
+        long pixels = (long) width * height;
+        PixelPermutation permutation = new PixelPermutation(pixels, key);
+        Decoder decoder = new Decoder(width, height);
+        for (int i = 0; i < pixels; i++) {
+            if (decoder.visit(pixelAt.applyAsInt(permutation.map(i)))) {
+                break;
+            }
+        }
+        return decoder.result();
+    }
+
+    /**
+     * 從逐列讀取的來源取出 payload，讀完訊息就停止，不會讀取其餘的列
+     */
+    static byte[] extract(PixelRowSource source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        Decoder decoder = new Decoder(width, height);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            source.readRow(y, row);
+            for (int x = 0; x < width; x++) {
+                if (decoder.visit(row[x])) {
+                    return decoder.result();
+                }
+            }
+        }
+        return decoder.result();
+    }
+
+    /**
+     * 取出 ARGB 像素 R、G、B 三個通道的最低位元，依序排成 3 bits
+     */
+    static int lsbBits(int argb) {
+        return ((argb >> 14) & 4) | ((argb >> 7) & 2) | (argb & 1);
+    }
+
+    /**
+     * 依光柵順序走訪像素，盡量直接讀取底層陣列；visitor 回傳 true 時提早結束。
+     *
+     * @return 是否被 visitor 提早結束
+     */
+    static boolean scan(BufferedImage image, PixelVisitor visitor) {
+        WritableRaster raster = image.getRaster();
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            return scanPackedInt(raster, visitor);
+        }
+        if (isInterleavedRgbBytes(image)) {
+            return scanInterleavedBytes(raster, visitor);
+        }
+        return scanGeneric(image, visitor);
+    }
+
+    private static boolean scanPackedInt(WritableRaster raster, PixelVisitor visitor) {
+        SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        int[] data = buffer.getData();
+        int stride = sm.getScanlineStride();
+        int base = buffer.getOffset()
+                + sm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+
+        for (int y = 0; y < height; y++) {
+            int row = base + y * stride;
+            for (int i = row, end = row + width; i < end; i++) {
+                if (visitor.visit(data[i])) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInterleavedRgbBytes(BufferedImage image) {
+        ColorModel cm = image.getColorModel();
+        WritableRaster raster = image.getRaster();
+        return cm instanceof ComponentColorModel
+                && cm.getColorSpace().isCS_sRGB()
+                && !cm.isAlphaPremultiplied()
+                && raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getSampleModel() instanceof PixelInterleavedSampleModel
+                && raster.getNumBands() >= 3
+                && raster.getNumBands() <= 4;
+    }
+
+    private static boolean scanInterleavedBytes(WritableRaster raster, PixelVisitor visitor) {
+        PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = buffer.getData();
+        int[] bandOffsets = sm.getBandOffsets();
+        int rOff = bandOffsets[0];
+        int gOff = bandOffsets[1];
+        int bOff = bandOffsets[2];
+        boolean hasAlpha = raster.getNumBands() == 4;
+        int aOff = hasAlpha ? bandOffsets[3] : 0;
+        int pixelStride = sm.getPixelStride();
+        int stride = sm.getScanlineStride();
+        // ComponentSampleModel.getOffset 會把第一個 band 的 offset 算進去，這裡自己算像素起點
+        int base = buffer.getOffset()
+                - raster.getSampleModelTranslateY() * stride
+                - raster.getSampleModelTranslateX() * pixelStride;
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+
+        for (int y = 0; y < height; y++) {
+            int p = base + y * stride;
+            for (int x = 0; x < width; x++, p += pixelStride) {
+                int a = hasAlpha ? data[p + aOff] & 0xFF : 0xFF;
+                int argb = (a << 24)
+                        | ((data[p + rOff] & 0xFF) << 16)
+                        | ((data[p + gOff] & 0xFF) << 8)
+                        | (data[p + bOff] & 0xFF);
+                if (visitor.visit(argb)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 其他色彩模型 (索引色、灰階、16-bit...) 一次轉換一整列，共用同一個列緩衝
+     */
+    private static boolean scanGeneric(BufferedImage image, PixelVisitor visitor) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                if (visitor.visit(row[x])) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 依序改寫像素：先以舊格式寫入 32 bits 長度前綴，再依模式寫入訊息內容。
+     * 可以分多次呼叫 {@link #encode}，每次處理接續的一段像素。
+     */
+    static final class Encoder {
+        private final BitSource[] sources;
+        private final LsbMode[] modes;
+        private final LsbOptions options;
+        private final int length;
+        private int segment;
+        private long remainingBits;
+
+        /**
+         * 需要壓縮時在這裡先壓縮；壓縮後沒有變小就改存原始內容
+         */
+        Encoder(byte[] payload, LsbOptions options) {
+            if (options.isCompress()) {
+                byte[] compressed = deflate(payload);
+                if (compressed.length < payload.length) {
+                    payload = compressed;
+                } else {
+                    options = options.withCompression(false);
+                }
+            }
+            this.options = options;
+            this.length = payload.length;
+            if (!options.isExtended()) {
+                sources = new BitSource[]{new BitSource(payload.length, 4, payload)};
+                modes = new LsbMode[]{LsbMode.LEGACY};
+            } else if (options.isErrorCorrection()) {
+                // 三份長度前綴剛好 96 bits = 32 個像素，訊息從第 33 個像素開始
+                int header = header(options, payload.length);
+                byte[] copies = new byte[12];
+                for (int i = 0; i < copies.length; i++) {
+                    copies[i] = (byte) (header >>> (24 - (i % 4) * 8));
+                }
+                sources = new BitSource[]{new BitSource(0, 0, copies), new BitSource(0, 0, ReedSolomon.encode(payload))};
+                modes = new LsbMode[]{LsbMode.LEGACY, options.mode()};
+            } else {
+                // 擴充模式的長度前綴佔 11 個像素 (最後一個像素只寫 2 bits)，訊息從下一個像素開始
+                sources = new BitSource[]{
+                        new BitSource(header(options, payload.length), 4, null),
+                        new BitSource(0, 0, payload)};
+                modes = new LsbMode[]{LsbMode.LEGACY, options.mode()};
+            }
+            remainingBits = sources[0].totalBits();
+        }
+
+        void checkCapacity(int width, int height) {
+            if (length > payloadCapacity(width, height, options)) {
+                throw new IllegalArgumentException("圖片容量不足以藏這段訊息");
+            }
+        }
+
+        /**
+         * 總共會改寫前面多少個像素
+         */
+        long pixelsNeeded() {
+            if (!options.isExtended()) {
+                return (sources[0].totalBits() + 2) / 3;
+            }
+            int bitsPerPixel = modes[1].getBitsPerPixel();
+            int headerPixels = options.isErrorCorrection() ? ECC_HEADER_PIXELS : HEADER_PIXELS;
+            return headerPixels + (sources[1].totalBits() + bitsPerPixel - 1) / bitsPerPixel;
+        }
+
+        boolean isDone() {
+            return segment == sources.length;
+        }
+
+        /**
+         * 依序改寫 data[from, to) 的像素，全部寫完時提早停止
+         *
+         * @return 下一個還沒處理的位置
+         */
+        int encode(int[] data, int from, int to) {
+            int i = from;
+            while (segment < sources.length && i < to) {
+                BitSource source = sources[segment];
+                LsbMode mode = modes[segment];
+                int bitsPerPixel = mode.getBitsPerPixel();
+                int keep = ~mode.getPixelMask();
+
+                int end = (int) Math.min(to, i + remainingBits / bitsPerPixel);
+                remainingBits -= (long) (end - i) * bitsPerPixel;
+                for (; i < end; i++) {
+                    data[i] = (data[i] & keep) | mode.spread(source.read(bitsPerPixel));
+                }
+
+                if (remainingBits > 0 && remainingBits < bitsPerPixel && i < to) {
+                    // 最後一個像素只改前面幾個通道，其餘保持原值
+                    int tailBits = (int) remainingBits;
+                    int bits = source.read(tailBits) << (bitsPerPixel - tailBits);
+                    data[i] = (data[i] & ~mode.leadingMask(tailBits)) | mode.spread(bits);
+                    i++;
+                    remainingBits = 0;
+                }
+                if (remainingBits == 0 && ++segment < sources.length) {
+                    remainingBits = sources[segment].totalBits();
+                }
+            }
+            return i;
+        }
+    }
+
+    /**
+     * 依序解讀像素：先以舊格式湊滿 32 bits 長度前綴，再依前綴記錄的模式收集訊息內容。
+     * 第一份前綴不是合法的舊格式時，會先讀完 ECC 模式的另外兩份前綴 (先讀進來的像素暫存起來) 再決定格式：
+     * 多數決的結果是合法的 ECC 前綴就採用，否則退回第一份前綴並補上暫存的像素。
+     */
+    static final class Decoder implements PixelVisitor {
+        private final long pixels;
+        private final int[] pending = new int[ECC_HEADER_PIXELS - HEADER_PIXELS];
+        private int header;
+        private long copies;
+        private int pixelIndex;
+        private LsbMode mode;
+        private BitSink sink;
+        private boolean invalid;
+
+        Decoder(int width, int height) {
+            this.pixels = (long) width * height;
+        }
+
+        @Override
+        public boolean visit(int argb) {
+            if (sink != null) {
+                return sink.push(mode.gather(argb), mode.getBitsPerPixel());
+            }
+            int bits = lsbBits(argb);
+            pixelIndex++;
+            if (pixelIndex < HEADER_PIXELS) {
+                header = (header << 3) | bits;
+                return false;
+            }
+            if (pixelIndex == HEADER_PIXELS) {
+                // 第 11 個像素：前 2 bits 屬於長度前綴，最後 1 bit 在舊格式中已經是訊息內容
+                header = (header << 2) | (bits >>> 1);
+                copies = bits & 1;
+                if ((header & EXTENDED_FLAG) == 0 && start(header)) {
+                    return sink.isDone() || sink.push(bits & 1, 1);
+                }
+                return false;
+            }
+
+            // 第 2、3 份長度前綴共 64 bits，第一個 bit 已在第 11 個像素取得
+            copies = (copies << 3) | bits;
+            pending[pixelIndex - HEADER_PIXELS - 1] = argb;
+            return pixelIndex == ECC_HEADER_PIXELS && settle();
+        }
+
+        /**
+         * 決定擴充模式的前綴，回傳 true 表示已經讀完或確定無效
+         */
+        private boolean settle() {
+            int second = (int) (copies >>> 32);
+            int third = (int) copies;
+            int voted = (header & second) | (header & third) | (second & third);
+            // 第一份前綴本身合法時，後兩份必須完全一致才推翻它，避免一般擴充模式的訊息內容剛好被當成 ECC 前綴
+            if (isEcc(voted) && (second == third || isEcc(header) || !accepts(header)) && start(voted)) {
+                return sink.isDone();
+            }
+            if (isEcc(header) || !start(header)) {
+                invalid = true;
+                return true;
+            }
+            if (sink.isDone()) {
+                return true;
+            }
+            for (int i = 0; i < pixelIndex - HEADER_PIXELS; i++) {
+                if (sink.push(mode.gather(pending[i]), mode.getBitsPerPixel())) {
+                    return true;
+                }
+            }
+            return sink.isDone();
+        }
+
+        private static boolean isEcc(int header) {
+            return header >= 0 && (header & EXTENDED_FLAG) != 0 && (header & ECC_FLAG) != 0;
+        }
+
+        private static LsbMode modeOf(int header) {
+            return (header & EXTENDED_FLAG) != 0
+                    ? new LsbMode(((header >>> 28) & 3) + 1, (header & (1 << 27)) != 0)
+                    : LsbMode.LEGACY;
+        }
+
+        /**
+         * 長度前綴是否合法：壓縮方式已知，且長度在圖片容量之內
+         */
+        private boolean accepts(int header) {
+            if (header < 0) {
+                return false;
+            }
+            boolean extended = (header & EXTENDED_FLAG) != 0;
+            int compression = extended ? header & COMPRESSION_MASK : 0;
+            if (compression != 0 && compression != COMPRESSION_DEFLATE) {
+                return false;
+            }
+            int length = extended ? header & MAX_EXTENDED_LENGTH : header;
+            // 長度超過圖片容量，代表這張圖沒有合法的隱藏訊息 (或前綴已經損毀)
+            return length <= capacity(pixels, extended, isEcc(header), modeOf(header));
+        }
+
+        private boolean start(int header) {
+            if (!accepts(header)) {
+                return false;
+            }
+            boolean extended = (header & EXTENDED_FLAG) != 0;
+            mode = modeOf(header);
+            sink = new BitSink(extended ? header & MAX_EXTENDED_LENGTH : header,
+                    extended && (header & COMPRESSION_MASK) == COMPRESSION_DEFLATE, isEcc(header));
+            return true;
+        }
+
+        boolean isComplete() {
+            // 像素數不足 ECC 前綴時，讀到圖片結尾才決定格式
+            if (sink == null && !invalid && pixelIndex >= HEADER_PIXELS) {
+                settle();
+            }
+            return !invalid && sink != null && sink.isComplete();
+        }
+
+        /**
+         * 讀完時回傳 payload (已更正、已解壓縮)，否則回傳 null
+         */
+        byte[] result() {
+            return isComplete() ? sink.result() : null;
+        }
+    }
+
+    /**
+     * 以 MSB 優先的順序吐出「長度前綴 + payload」的 bit，內部一次預載 64 bits
+     */
+    static final class BitSource {
+        private final int header;
+        private final byte[] payload;
+        private final int payloadLength;
+        private final long totalBits;
+        private long buffer;
+        private int available;
+        private int bytePos;
+
+        /**
+         * @param header      長度前綴的值
+         * @param headerBytes 要輸出幾個 bytes 的長度前綴 (0 或 4)
+         * @param payload     訊息內容，可為 null
+         */
+        BitSource(int header, int headerBytes, byte[] payload) {
+            this.header = header;
+            this.payload = payload;
+            this.payloadLength = payload == null ? 0 : payload.length;
+            this.totalBits = ((long) payloadLength + headerBytes) * 8;
+            this.bytePos = -headerBytes;
+        }
+
+        long totalBits() {
+            return totalBits;
+        }
+
+        /**
+         * 讀出接下來的 n 個 bit (1 ≤ n ≤ 32)，超過結尾的部分補 0
+         */
+        int read(int n) {
+            if (available < n) {
+                refill();
+            }
+            int value = (int) (buffer >>> (64 - n));
+            buffer <<= n;
+            available -= n;
+            return value;
+        }
+
+        private void refill() {
+            while (available <= 56) {
+                buffer |= (long) nextByte() << (56 - available);
+                available += 8;
+            }
+        }
+
+        private int nextByte() {
+            int index = bytePos++;
+            if (index < 0) {
+                // 長度前綴，big-endian
+                return (header >>> (-index - 1) * 8) & 0xFF;
+            }
+            return index < payloadLength ? payload[index] & 0xFF : 0;
+        }
+    }
+
+    /**
+     * 收集已知長度的訊息內容。ECC 模式每收滿一個 RS 區塊就更正一次；
+     * 壓縮過的內容每湊滿一小段就交給 Inflater，不保留整段壓縮資料
+     */
+    static final class BitSink {
+        private static final int CHUNK = 8192;
+
+        private final int length;
+        private final byte[] buffer;
+        private final Inflater inflater;
+        private final byte[] block;
+        private int blockPos;
+        private int blockLength;
+        private long accumulator;
+        private int accumulated;
+        private int bufferPos;
+        private int received;
+        private byte[] output;
+        private int outputLength;
+        private boolean inflated;
+        private boolean failed;
+
+        BitSink(int length, boolean compressed, boolean ecc) {
+            this.length = length;
+            this.block = ecc ? new byte[255] : null;
+            this.blockLength = Math.min(ReedSolomon.BLOCK_DATA, length) + ReedSolomon.PARITY;
+            this.buffer = new byte[compressed ? Math.min(length, CHUNK) : length];
+            this.inflater = compressed ? new Inflater() : null;
+            if (compressed) {
+                output = new byte[(int) Math.max(64, Math.min(length * 4L, 1 << 20))];
+            }
+        }
+
+        /**
+         * 推入 n 個 bit (MSB 在前，n ≤ 32)，回傳 true 表示已經讀完或確定無效
+         */
+        boolean push(int bits, int n) {
+            accumulator = (accumulator << n) | (bits & 0xFFFFFFFFL);
+            accumulated += n;
+            while (accumulated >= 8) {
+                accumulated -= 8;
+                byte b = (byte) (accumulator >>> accumulated);
+                if (block == null) {
+                    accept(b);
+                } else {
+                    block[blockPos++] = b;
+                    if (blockPos == blockLength) {
+                        if (!ReedSolomon.decode(block, blockLength)) {
+                            fail();
+                            return true;
+                        }
+                        for (int i = 0; i < blockLength - ReedSolomon.PARITY; i++) {
+                            accept(block[i]);
+                        }
+                        blockPos = 0;
+                        blockLength = Math.min(ReedSolomon.BLOCK_DATA, length - received) + ReedSolomon.PARITY;
+                    }
+                }
+                if (isDone()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void accept(byte b) {
+            if (failed) {
+                return;
+            }
+            buffer[bufferPos++] = b;
+            received++;
+            if (inflater != null && (bufferPos == buffer.length || received == length)) {
+                if (inflated) {
+                    // zlib 結尾之後的多餘資料直接略過
+                    bufferPos = 0;
+                } else {
+                    inflateChunk();
+                }
+            }
+        }
+
+        private void inflateChunk() {
+            inflater.setInput(buffer, 0, bufferPos);
+            bufferPos = 0;
+            try {
+                while (!inflater.finished() && !inflater.needsInput()) {
+                    if (outputLength == output.length) {
+                        if (output.length == MAX_INFLATED_LENGTH) {
+                            fail();
+                            return;
+                        }
+                        output = Arrays.copyOf(output, (int) Math.min(MAX_INFLATED_LENGTH, output.length * 2L));
+                    }
+                    outputLength += inflater.inflate(output, outputLength, output.length - outputLength);
+                    if (inflater.needsDictionary()) {
+                        fail();
+                        return;
+                    }
+                }
+            } catch (DataFormatException e) {
+                fail();
+                return;
+            }
+            // 壓縮資料已經收完卻還沒解到結尾，代表內容損毀
+            if (received == length && !inflater.finished()) {
+                fail();
+            } else if (inflater.finished()) {
+                inflated = true;
+                inflater.end();
+            }
+        }
+
+        private void fail() {
+            failed = true;
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+
+        /**
+         * 已經收完全部內容，或是確定解壓縮失敗
+         */
+        boolean isDone() {
+            return failed || received == length;
+        }
+
+        boolean isComplete() {
+            return !failed && received == length && (inflater == null || inflated);
+        }
+
+        byte[] result() {
+            if (inflater == null) {
+                return buffer;
+            }
+            return Arrays.copyOf(output, outputLength);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.yienruuuuu;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 只解碼需要的列就停下來的 LSB 解碼器。
+ * <p>
+ * 8-bit RGB / RGBA PNG 會用 {@link PngScanlineReader} 一列一列解壓縮，讀完長度前綴與訊息就停止，
+ * 時間與記憶體只跟訊息長度有關，與整張圖大小無關。其他格式退回 ImageIO 整張讀入後再解碼。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/10
+ */
+final class LsbStreamExtractor {
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G'};
+
+    private LsbStreamExtractor() {
+    }
+
+    static byte[] extract(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            if (startsWithPng(in)) {
+                PngScanlineReader png = new PngScanlineReader(in);
+                if (png.isSupported()) {
+                    try {
+                        return extract(png);
+                    } finally {
+                        png.close();
+                    }
+                }
+            }
+        }
+        return extractWithImageIO(ImageIO.read(file.toFile()));
+    }
+
+    /**
+     * 從影像串流取出 payload，找不到合法的隱藏訊息時回傳 null；呼叫端負責關閉串流
+     */
+    static byte[] extract(ImageInputStream in) throws IOException {
+        in.mark();
+        PngScanlineReader png = null;
+        try {
+            InputStream adapter = new ImageInputStreamAdapter(in);
+            if (startsWithPng(adapter)) {
+                png = new PngScanlineReader(adapter);
+                if (png.isSupported()) {
+                    return extract(png);
+                }
+            }
+        } finally {
+            if (png != null) {
+                png.close();
+            }
+        }
+        in.reset();
+        return extractWithImageIO(ImageIO.read(in));
+    }
+
+    static byte[] extract(PngScanlineReader png) throws IOException {
+        int width = png.getWidth();
+        LsbRasterCodec.Decoder decoder = new LsbRasterCodec.Decoder(width, png.getHeight());
+        int[] row = new int[width];
+        while (png.readRow(row)) {
+            for (int x = 0; x < width; x++) {
+                if (decoder.visit(row[x])) {
+                    return decoder.result();
+                }
+            }
+        }
+        return decoder.result();
+    }
+
+    private static byte[] extractWithImageIO(BufferedImage image) throws IOException {
+        if (image == null) {
+            throw new IOException("不支援的圖片格式");
+        }
+        return LsbRasterCodec.extract(image);
+    }
+
+    /**
+     * 偷看前 4 bytes 是否為 PNG 簽章，讀完會把串流位置還原
+     */
+    private static boolean startsWithPng(InputStream in) throws IOException {
+        in.mark(PNG_MAGIC.length);
+        try {
+            for (byte b : PNG_MAGIC) {
+                if (in.read() != (b & 0xFF)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * 把 ImageInputStream 包成 InputStream，close 時不關閉底層串流
+     */
+    private static final class ImageInputStreamAdapter extends InputStream {
+        private final ImageInputStream in;
+
+        ImageInputStreamAdapter(ImageInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            in.mark();
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            in.reset();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
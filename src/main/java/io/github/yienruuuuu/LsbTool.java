@@ -1,121 +1,148 @@
 package io.github.yienruuuuu;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * @author Eric.Lee
  * Date: 2025/3/25
  */
 public class LsbTool {
+    /**
+     * 以密語取出時整張讀進 heap 的像素數上限 (約 5800×5800)，更大的圖改用記憶體映射檔
+     */
+    private static final long IN_MEMORY_PIXELS = 1L << 25;
+
     public static BufferedImage hideTextInImageLSB(BufferedImage image, String secretMessage) {
-        BufferedImage stegoImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = stegoImage.createGraphics();
-        g.drawImage(image, 0, 0, null);
-        g.dispose();
+        // 長度前綴 + 訊息的打包與寫入交給 LsbRasterCodec，直接操作底層陣列
+        byte[] msgBytes = secretMessage.getBytes(StandardCharsets.UTF_8);
+        return LsbRasterCodec.embed(image, msgBytes);
+    }
 
+    /**
+     * 以指定模式藏入訊息，例如每個通道藏 2 bits 並使用 alpha，容量是舊格式的 8/3 倍；
+     * 模式會記錄在長度前綴中，解碼時不需要另外指定
+     */
+    public static BufferedImage hideTextInImageLSB(BufferedImage image, String secretMessage, LsbOptions options) {
         byte[] msgBytes = secretMessage.getBytes(StandardCharsets.UTF_8);
-        int msgLength = msgBytes.length;
-        int totalBits = (msgLength + 4) * 8; // 加 4 bytes 用來記錄長度
-        int width = image.getWidth();
-        int height = image.getHeight();
-        int imgCapacity = width * height * 3; // 每個像素可藏 3 bits
+        return LsbRasterCodec.embed(image, msgBytes, options);
+    }
 
-        if (totalBits > imgCapacity) {
-            throw new IllegalArgumentException("圖片容量不足以藏這段訊息");
+    /**
+     * 直接以檔案處理大圖：來源先解碼成記憶體映射的像素檔 (同一張母圖重複處理時會重用)，
+     * 藏入訊息後逐列壓縮成 PNG 寫到 target，整個過程不需要把整張圖放進 heap；
+     * 解碼前會先讀檔頭檢查容量，放不下時直接丟出 IllegalArgumentException
+     */
+    public static void hideTextInImageLSB(File source, File target, String secretMessage, LsbOptions options)
+            throws IOException {
+        byte[] msgBytes = secretMessage.getBytes(StandardCharsets.UTF_8);
+        CapacityPlanner.check(source.toPath(), msgBytes, options);
+        MappedPixelImage image;
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+            image = MappedPixelImage.load(source.toPath(), MappedPixelImage.defaultCacheDir());
         }
-
-        // 將長度 + 訊息合併為位元列
-        ByteBuffer buffer = ByteBuffer.allocate(msgBytes.length + 4);
-        buffer.putInt(msgBytes.length);
-        buffer.put(msgBytes);
-        byte[] fullData = buffer.array();
-
-        int bitIndex = 0;
-        outerLoop:
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = stegoImage.getRGB(x, y);
-                Color color = new Color(rgb, true);
-
-                int r = color.getRed();
-                int g1 = color.getGreen();
-                int b = color.getBlue();
-                int a = color.getAlpha();
-
-                // 修改 RGB 的最低位元（LSB）
-                if (bitIndex < totalBits) r = (r & 0xFE) | getBit(fullData, bitIndex++);
-                if (bitIndex < totalBits) g1 = (g1 & 0xFE) | getBit(fullData, bitIndex++);
-                if (bitIndex < totalBits) b = (b & 0xFE) | getBit(fullData, bitIndex++);
-
-                Color newColor = new Color(r, g1, b, a);
-                stegoImage.setRGB(x, y, newColor.getRGB());
-
-                if (bitIndex >= totalBits) break outerLoop;
+        try (image;
+             FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            PixelRowSource stego = LsbRasterCodec.embed(image, msgBytes, options);
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.ENCODE)) {
+                PngEncoder.DEFAULT.encode(stego, out);
             }
         }
-
-        return stegoImage;
     }
 
-    private static int getBit(byte[] data, int bitIndex) {
-        int byteIndex = bitIndex / 8;
-        int bitOffset = 7 - (bitIndex % 8);
-        return (data[byteIndex] >> bitOffset) & 1;
+    /**
+     * 指定尺寸與模式下最多可以藏多少 bytes (UTF-8) 的訊息
+     */
+    public static long payloadCapacity(int width, int height, LsbOptions options) {
+        return Math.max(0, LsbRasterCodec.payloadCapacity(width, height, options));
     }
 
     public static String extractTextFromImageLSB(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-
-        int totalBitsToRead = -1;
-        int bitIndex = 0;
-        int currentByte = 0;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                Color color = new Color(rgb, true);
-
-                int[] channels = {color.getRed(), color.getGreen(), color.getBlue()};
-
-                for (int i = 0; i < 3; i++) {
-                    int lsb = channels[i] & 1;
-                    currentByte = (currentByte << 1) | lsb;
-                    bitIndex++;
+        byte[] msgBytes;
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.EXTRACT)) {
+            msgBytes = LsbRasterCodec.extract(image);
+        }
+        return toText(msgBytes);
+    }
 
-                    // 每讀滿 8 bits 就寫入一個 byte
-                    if (bitIndex % 8 == 0) {
-                        buffer.write(currentByte);
-                        currentByte = 0;
+    /**
+     * 以藏入時使用的密語 ({@link LsbOptions#withKey(String)}) 取出訊息
+     */
+    public static String extractTextFromImageLSB(BufferedImage image, String key) {
+        byte[] msgBytes;
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.EXTRACT)) {
+            msgBytes = LsbRasterCodec.extract(image, LsbOptions.deriveKey(key));
+        }
+        return toText(msgBytes);
+    }
 
-                        // 讀完前 4 個 byte（32 bit）後，解析出訊息長度
-                        if (bitIndex == 32) {
-                            byte[] lengthBytes = buffer.toByteArray();
-                            int msgLength = ByteBuffer.wrap(lengthBytes).getInt();
-                            totalBitsToRead = (msgLength + 4) * 8;
-                        }
+    /**
+     * 以密語從圖片檔取出訊息。像素分散在整張圖，沒辦法只解壓縮前幾列：
+     * 放得進記憶體的圖直接整張讀入，更大的圖解碼成暫時的記憶體映射檔，讀完即刪除，不會留在快取中
+     */
+    public static String extractTextFromImageLSB(File imageFile, String key) throws IOException {
+        return extractTextFromImageLSB(imageFile, key, null);
+    }
 
-                        // 若已知總共要讀幾個 bits 且已達上限，就結束
-                        if (totalBitsToRead > 0 && bitIndex >= totalBitsToRead) {
-                            byte[] fullMsg = buffer.toByteArray();
-                            byte[] msgOnly = Arrays.copyOfRange(fullMsg, 4, fullMsg.length); // 去掉長度
-                            return new String(msgOnly, StandardCharsets.UTF_8);
-                        }
-                    }
+    /**
+     * 同 {@link #extractTextFromImageLSB(File, String)}，但解碼結果放在 pixelCache 快取資料夾中重用
+     * (見 {@link MappedPixelImage#load(java.nio.file.Path, java.nio.file.Path)})，
+     * 適合同一張圖要以不同密語反覆嘗試的情境；pixelCache 為 null 時不使用快取
+     */
+    public static String extractTextFromImageLSB(File imageFile, String key, Path pixelCache) throws IOException {
+        byte[] derived = LsbOptions.deriveKey(key);
+        if (derived == null) {
+            return extractTextFromImageLSB(imageFile);
+        }
+        if (pixelCache == null) {
+            CapacityPlanner.ImageInfo info = CapacityPlanner.probe(imageFile.toPath());
+            if ((long) info.getWidth() * info.getHeight() <= IN_MEMORY_PIXELS) {
+                BufferedImage image;
+                try (StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+                    image = ImageIO.read(imageFile);
+                }
+                if (image == null) {
+                    throw new IOException("不支援的圖片格式: " + imageFile);
                 }
+                return extractTextFromImageLSB(image, key);
             }
         }
+        MappedPixelImage image;
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+            image = pixelCache == null
+                    ? MappedPixelImage.decodeTemporary(imageFile.toPath(), MappedPixelImage.defaultCacheDir())
+                    : MappedPixelImage.load(imageFile.toPath(), pixelCache);
+        }
+        try (image; StageMetrics.Span span = StageMetrics.start(StageMetrics.EXTRACT)) {
+            return toText(LsbRasterCodec.extractScattered(image::getPixel, image.getWidth(), image.getHeight(), derived));
+        }
+    }
 
-        return null;
+    /**
+     * 直接從圖片檔解碼，只解壓縮放有訊息的那幾列，不必先把整張圖讀進記憶體
+     */
+    public static String extractTextFromImageLSB(File imageFile) throws IOException {
+        // 逐列解壓縮與解碼交錯進行，整段都算在 extract
+        byte[] msgBytes;
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.EXTRACT)) {
+            msgBytes = LsbStreamExtractor.extract(imageFile.toPath());
+        }
+        return toText(msgBytes);
+    }
+
+    private static String toText(byte[] msgBytes) {
+        if (msgBytes == null) {
+            return null;
+        }
+        StageMetrics.count(StageMetrics.IMAGES_EXTRACTED, 1);
+        return new String(msgBytes, StandardCharsets.UTF_8);
     }
 
 
@@ -125,8 +152,7 @@ public class LsbTool {
 //            BufferedImage withHidden = hideTextInImageLSB(originalImg, "我是隱藏訊息，苦力怕炸你家");
 //            ImageIO.write(withHidden, "png", new File("./pic/out/hidden_inside.png"));
 
-            BufferedImage imageWithHidden = ImageIO.read(new File("./pic/out/222/hidden_inside.png"));
-            String decodedMessage = extractTextFromImageLSB(imageWithHidden);
+            String decodedMessage = extractTextFromImageLSB(new File("./pic/out/222/hidden_inside.png"));
             System.out.println("🔓 解碼結果: " + decodedMessage);
         } catch (Exception e) {
             e.printStackTrace();
@@ -0,0 +1,402 @@
+package io.github.yienruuuuu;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以記憶體映射檔 (FileChannel.map) 存放的 ARGB 像素，取代放在 heap 上的 BufferedImage。
+ * <p>
+ * 檔案格式為 16 bytes 檔頭 (magic、寬、高、是否含透明度) 加上逐列排列的 native byte order int。
+ * 單一 MappedByteBuffer 不能超過 2 GB，所以依整列切成多個映射區段；16K×16K 的圖約 1 GB，
+ * 由作業系統的 page cache 負責載入，不佔 heap。
+ * <p>
+ * {@link #load(Path, Path)} 會把解碼結果留在快取資料夾，以來源路徑、大小與修改時間為 key，
+ * 同一張母圖重複處理時直接映射既有檔案，不必再解碼一次 PNG。快取總大小超過上限時
+ * ({@link #DEFAULT_CACHE_LIMIT}，可用系統屬性 {@value #CACHE_LIMIT_PROPERTY} 調整) 依最久沒用到的順序刪除；
+ * 只用一次的圖片請改用 {@link #decodeTemporary(Path, Path)}，關閉時就會刪除檔案。
+ *
+ * @author Eric.Lee
+ * Date: 2025/5/20
+ */
+final class MappedPixelImage implements PixelRowSource, Closeable {
+    private static final int MAGIC = 0x4C534250; // "LSBP"
+    private static final int HEADER_BYTES = 16;
+    private static final String PART_SUFFIX = ".part";
+    private static final String CACHE_SUFFIX = ".pix";
+    /**
+     * 快取資料夾的預設大小上限 (約 4 張 16K×16K 的母圖)
+     */
+    static final long DEFAULT_CACHE_LIMIT = 4L << 30;
+    static final String CACHE_LIMIT_PROPERTY = "hidden-word-tool.pixel-cache.max-bytes";
+    /**
+     * 超過這個時間的 .part 檔視為中斷的 process 留下的殘檔
+     */
+    private static final long STALE_PART_MILLIS = 60 * 60 * 1000L;
+    /**
+     * 單一映射區段的大小上限 (MappedByteBuffer 的容量是 int)
+     */
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final boolean alpha;
+    private final int rowsPerSegment;
+    private final IntBuffer[] segments;
+    private Path deleteOnClose;
+
+    private MappedPixelImage(FileChannel channel, int width, int height, boolean alpha, boolean writable,
+                             long segmentBytes) throws IOException {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.alpha = alpha;
+
+        long rowBytes = (long) width * Integer.BYTES;
+        this.rowsPerSegment = (int) Math.max(1, segmentBytes / rowBytes);
+        int count = (height + rowsPerSegment - 1) / rowsPerSegment;
+        this.segments = new IntBuffer[count];
+        FileChannel.MapMode mapMode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        for (int i = 0; i < count; i++) {
+            int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+            MappedByteBuffer mapped = channel.map(mapMode,
+                    HEADER_BYTES + (long) i * rowsPerSegment * rowBytes, rows * rowBytes);
+            segments[i] = mapped.order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+
+    /**
+     * 建立新的像素檔 (內容全為 0)，可用 {@link #writeRow} 寫入
+     */
+    static MappedPixelImage create(Path file, int width, int height, boolean alpha) throws IOException {
+        return create(file, width, height, alpha, MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * segmentBytes 為每個映射區段的大小上限 (至少一列)，測試時以很小的區段驗證跨區段的存取
+     */
+    static MappedPixelImage create(Path file, int width, int height, boolean alpha, long segmentBytes)
+            throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("圖片寬高必須大於 0");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(width).putInt(height).putInt(alpha ? 1 : 0);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            return new MappedPixelImage(channel, width, height, alpha, true, segmentBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 以唯讀方式映射既有的像素檔
+     */
+    static MappedPixelImage open(Path file) throws IOException {
+        return open(file, MAX_SEGMENT_BYTES);
+    }
+
+    static MappedPixelImage open(Path file, long segmentBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // 讀滿檔頭為止
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("不是像素快取檔: " + file);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            boolean alpha = header.getInt() != 0;
+            if (width <= 0 || height <= 0
+                    || channel.size() < HEADER_BYTES + (long) width * height * Integer.BYTES) {
+                throw new IOException("像素快取檔不完整: " + file);
+            }
+            return new MappedPixelImage(channel, width, height, alpha, false, segmentBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 把圖片解碼成 rawFile。8-bit RGB / RGBA PNG 以 {@link PngScanlineReader} 逐列解碼，
+     * 不會整張放進 heap；其他格式只能先以 ImageIO 讀入再逐列寫出。
+     */
+    static MappedPixelImage decode(Path image, Path rawFile) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(image))) {
+            PngScanlineReader png = openPng(in);
+            if (png != null && png.isSupported()) {
+                try {
+                    return decode(png, rawFile);
+                } finally {
+                    png.close();
+                }
+            }
+        }
+        BufferedImage decoded = ImageIO.read(image.toFile());
+        if (decoded == null) {
+            throw new IOException("不支援的圖片格式: " + image);
+        }
+        PixelRowSource rows = PixelRowSource.of(decoded);
+        MappedPixelImage mapped = create(rawFile, rows.getWidth(), rows.getHeight(), rows.hasAlpha());
+        int[] row = new int[rows.getWidth()];
+        for (int y = 0; y < rows.getHeight(); y++) {
+            rows.readRow(y, row);
+            mapped.writeRow(y, row);
+        }
+        return mapped;
+    }
+
+    /**
+     * 不是 PNG 時回傳 null
+     */
+    private static PngScanlineReader openPng(InputStream in) {
+        try {
+            return new PngScanlineReader(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static MappedPixelImage decode(PngScanlineReader png, Path rawFile) throws IOException {
+        int[] row = new int[png.getWidth()];
+        // 第一列讀完後才知道有沒有 tRNS，所以先讀一列再建立檔案
+        if (!png.readRow(row)) {
+            throw new IOException("PNG 沒有影像資料");
+        }
+        MappedPixelImage mapped = create(rawFile, png.getWidth(), png.getHeight(), png.hasAlpha());
+        try {
+            int y = 0;
+            do {
+                mapped.writeRow(y++, row);
+            } while (png.readRow(row));
+            return mapped;
+        } catch (IOException | RuntimeException e) {
+            mapped.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 取得 source 的映射像素，cacheDir 中已有相同來源 (路徑、大小、修改時間皆相同) 的解碼結果時直接重用；
+     * 新增快取後若資料夾超過大小上限，會刪除最久沒用到的快取檔
+     */
+    static MappedPixelImage load(Path source, Path cacheDir) throws IOException {
+        return load(source, cacheDir, cacheLimit());
+    }
+
+    static MappedPixelImage load(Path source, Path cacheDir, long maxCacheBytes) throws IOException {
+        Files.createDirectories(cacheDir);
+        Path cached = cacheDir.resolve(cacheKey(source) + CACHE_SUFFIX);
+        if (Files.exists(cached)) {
+            try {
+                MappedPixelImage image = open(cached);
+                touch(cached);
+                return image;
+            } catch (IOException e) {
+                // 快取檔損毀就重新解碼
+                Files.deleteIfExists(cached);
+            }
+        }
+
+        // 先解碼到暫存檔再搬移，避免中斷時留下不完整的快取；暫存檔名由 createTempFile 產生，
+        // 多個 process 同時解碼同一張圖也不會互相截斷對方正在映射的檔案
+        Path part = Files.createTempFile(cacheDir, cached.getFileName().toString(), PART_SUFFIX);
+        try {
+            decode(source, part).close();
+            Files.move(part, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+        MappedPixelImage image = open(cached);
+        evict(cacheDir, maxCacheBytes, cached);
+        return image;
+    }
+
+    /**
+     * 解碼到 dir 中的暫存檔，關閉時刪除，不會留在快取中
+     */
+    static MappedPixelImage decodeTemporary(Path source, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path file = Files.createTempFile(dir, "transient", PART_SUFFIX);
+        MappedPixelImage image;
+        try {
+            image = decode(source, file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        image.deleteOnClose = file;
+        return image;
+    }
+
+    /**
+     * 刪除最久沒用到的快取檔，直到資料夾中的快取總大小不超過 maxBytes；keep 不會被刪除 (可為 null)。
+     * 同時清掉中斷的 process 留下的舊 .part 檔。已被其他 process 映射的檔案在 Linux / macOS 刪除後
+     * 仍可繼續讀取，無法刪除 (例如 Windows) 時略過
+     */
+    static void evict(Path cacheDir, long maxBytes, Path keep) throws IOException {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        List<Path> entries = new ArrayList<>();
+        Map<Path, FileTime> lastUsed = new HashMap<>();
+        long total = 0;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (name.endsWith(PART_SUFFIX)) {
+                        if (now - attrs.lastModifiedTime().toMillis() > STALE_PART_MILLIS) {
+                            Files.deleteIfExists(file);
+                        }
+                    } else if (name.endsWith(CACHE_SUFFIX)) {
+                        total += attrs.size();
+                        if (!file.equals(keep)) {
+                            entries.add(file);
+                            lastUsed.put(file, attrs.lastModifiedTime());
+                        }
+                    }
+                } catch (IOException e) {
+                    // 其他 process 同時刪除或搬移，略過
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(lastUsed::get));
+        for (Path file : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            try {
+                long size = Files.size(file);
+                Files.deleteIfExists(file);
+                total -= size;
+            } catch (IOException e) {
+                // 無法刪除就留到下次
+            }
+        }
+    }
+
+    private static long cacheLimit() {
+        return Long.getLong(CACHE_LIMIT_PROPERTY, DEFAULT_CACHE_LIMIT);
+    }
+
+    /**
+     * 以修改時間記錄最後使用時間，讓淘汰順序接近 LRU
+     */
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // 唯讀的快取資料夾只是淘汰順序不準，不影響讀取
+        }
+    }
+
+    /**
+     * 預設的快取資料夾：系統暫存目錄下的 hidden-word-tool/pixels
+     */
+    static Path defaultCacheDir() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "hidden-word-tool", "pixels");
+    }
+
+    private static String cacheKey(Path source) throws IOException {
+        Path real = source.toRealPath();
+        String key = real + "|" + Files.size(real) + "|" + Files.getLastModifiedTime(real).toMillis();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean hasAlpha() {
+        return alpha;
+    }
+
+    /**
+     * 絕對位置的批次讀取不會改動 buffer 的 position，可以多條執行緒同時讀
+     */
+    @Override
+    public void readRow(int y, int[] dst) {
+        segments[y / rowsPerSegment].get((y % rowsPerSegment) * width, dst, 0, width);
+    }
+
+    /**
+     * 以 raster 順序的索引讀取單一像素
+     */
+    int getPixel(int index) {
+        int y = index / width;
+        return segments[y / rowsPerSegment].get((y % rowsPerSegment) * width + index % width);
+    }
+
+    void writeRow(int y, int[] src) {
+        segments[y / rowsPerSegment].put((y % rowsPerSegment) * width, src, 0, width);
+    }
+
+    /**
+     * 關閉檔案；映射區段要等 GC 回收後才會真正解除映射。{@link #decodeTemporary} 建立的檔案會一併刪除
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (deleteOnClose != null) {
+            try {
+                Files.deleteIfExists(deleteOnClose);
+            } catch (IOException e) {
+                // Windows 上仍被映射的檔案無法刪除，留給 JVM 結束時處理
+                deleteOnClose.toFile().deleteOnExit();
+            }
+            deleteOnClose = null;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.yienruuuuu;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以 Micrometer 記錄各階段統計的 {@link StageRecorder}。
+ * <p>
+ * 產生的 meter：
+ * <pre>
+ * stego.stage             Timer               tag stage        各階段耗時
+ * stego.stage.allocated   DistributionSummary tag stage        各階段在目前執行緒配置的 bytes
+ * stego.&lt;name&gt;          Counter                              張數、寫入 bytes 等計數
+ * stego.failures          Counter             tag stage, cause 依原因分類的失敗次數
+ * stego.capacity.utilisation DistributionSummary               寫入量 / 圖片容量
+ * </pre>
+ * HTTP 服務使用 Spring 注入的 registry (經由 actuator 對外提供)；批次工具則用自己的 {@link SimpleMeterRegistry}，
+ * 結束時以 {@link #writeSummary(Path)} 寫出 JSON 摘要。
+ *
+ * @author Eric.Lee
+ * Date: 2025/5/20
+ */
+public class MicrometerStageRecorder implements StageRecorder {
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> allocations = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> failures = new ConcurrentHashMap<>();
+    private final DistributionSummary utilisation;
+
+    public MicrometerStageRecorder() {
+        this(new SimpleMeterRegistry());
+    }
+
+    public MicrometerStageRecorder(MeterRegistry registry) {
+        this.registry = registry;
+        this.utilisation = DistributionSummary.builder("stego.capacity.utilisation")
+                .description("實際寫入的 bytes 佔圖片容量的比例")
+                .register(registry);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    @Override
+    public void stage(String stage, long elapsedNanos, long allocatedBytes) {
+        timers.computeIfAbsent(stage, s -> Timer.builder("stego.stage")
+                        .tag("stage", s)
+                        .register(registry))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (allocatedBytes >= 0) {
+            allocations.computeIfAbsent(stage, s -> DistributionSummary.builder("stego.stage.allocated")
+                            .baseUnit("bytes")
+                            .tag("stage", s)
+                            .register(registry))
+                    .record(allocatedBytes);
+        }
+    }
+
+    @Override
+    public void count(String name, long amount) {
+        counters.computeIfAbsent(name, n -> registry.counter("stego." + n)).increment(amount);
+    }
+
+    @Override
+    public void failure(String stage, String cause) {
+        failures.computeIfAbsent(stage + '\t' + cause,
+                key -> registry.counter("stego.failures", "stage", stage, "cause", cause)).increment();
+    }
+
+    @Override
+    public void capacityUtilisation(double ratio) {
+        utilisation.record(ratio);
+    }
+
+    /**
+     * 以 JSON 寫出目前的統計：各階段次數 / 總耗時 / 平均與最大耗時 / 配置量、各計數、失敗原因與容量使用率
+     */
+    @Override
+    public void writeSummary(Path file) throws IOException {
+        Map<String, Object> stages = new TreeMap<>();
+        timers.forEach((stage, timer) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("count", timer.count());
+            entry.put("totalMillis", timer.totalTime(TimeUnit.MILLISECONDS));
+            entry.put("meanMillis", timer.mean(TimeUnit.MILLISECONDS));
+            entry.put("maxMillis", timer.max(TimeUnit.MILLISECONDS));
+            DistributionSummary allocated = allocations.get(stage);
+            if (allocated != null) {
+                entry.put("allocatedBytes", (long) allocated.totalAmount());
+                entry.put("allocatedBytesPerCall", (long) allocated.mean());
+            }
+            stages.put(stage, entry);
+        });
+
+        Map<String, Object> counts = new TreeMap<>();
+        counters.forEach((name, counter) -> counts.put(name, (long) counter.count()));
+
+        Map<String, Map<String, Long>> failed = new TreeMap<>();
+        failures.forEach((key, counter) -> {
+            int tab = key.indexOf('\t');
+            failed.computeIfAbsent(key.substring(0, tab), s -> new TreeMap<>())
+                    .put(key.substring(tab + 1), (long) counter.count());
+        });
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("stages", stages);
+        summary.put("counters", counts);
+        summary.put("failures", failed);
+        Map<String, Object> ratio = new LinkedHashMap<>();
+        ratio.put("count", utilisation.count());
+        ratio.put("mean", utilisation.mean());
+        ratio.put("max", utilisation.max());
+        summary.put("capacityUtilisation", ratio);
+
+        // 與批次輸出一樣先寫暫存檔再搬移，避免留下寫到一半的摘要
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        try {
+            new ObjectMapper()
+                    .enable(SerializationFeature.INDENT_OUTPUT)
+                    .writeValue(part.toFile(), summary);
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.yienruuuuu;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.stream.IntStream;
+
+/**
+ * 直接在 packed ARGB int 陣列上運作的像素批次運算 (負片、白色門檻)。
+ * <p>
+ * 執行時若有載入 {@code jdk.incubator.vector} 模組 (JVM 參數 {@code --add-modules jdk.incubator.vector})
+ * 會改用 {@link VectorPixelKernels} 的 SIMD 實作，否則使用純量迴圈；兩者結果完全相同。
+ * 整張圖的運算會依列切段，交給 common pool 平行處理。
+ *
+ * @author Eric.Lee
+ * Date: 2025/5/6
+ */
+public final class PixelKernels {
+    /**
+     * 像素數少於此值時不切段平行，避免排程成本大於運算本身
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    private static final Backend BACKEND = loadBackend();
+
+    private PixelKernels() {
+    }
+
+    /**
+     * 實際執行逐像素運算的實作
+     */
+    interface Backend {
+        void negate(int[] src, int srcPos, int[] dst, int dstPos, int length);
+
+        int whiteMask(int[] argb, int srcPos, byte[] mask, int maskPos, int length, int limit);
+    }
+
+    private static Backend loadBackend() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Backend) Class.forName("io.github.yienruuuuu.VectorPixelKernels")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // 模組存在但無法使用 (例如被安全設定擋下) 時退回純量實作
+            }
+        }
+        return new Scalar();
+    }
+
+    /**
+     * 目前使用的實作名稱，方便在 benchmark 輸出中確認
+     */
+    public static String backendName() {
+        return BACKEND.getClass().getSimpleName();
+    }
+
+    /**
+     * 負片：dst[i] = RGB 取反，最高 byte 清為 0 (對應 TYPE_INT_RGB)
+     */
+    public static void negate(int[] src, int srcPos, int[] dst, int dstPos, int length) {
+        BACKEND.negate(src, srcPos, dst, dstPos, length);
+    }
+
+    /**
+     * 白色門檻：平均值 (r+g+b)/3 大於 threshold 的像素在 mask 中寫 1，否則寫 0
+     *
+     * @return 白像素數量
+     */
+    public static int whiteMask(int[] argb, int srcPos, byte[] mask, int maskPos, int length, int threshold) {
+        // (r+g+b)/3 > threshold 等價於 r+g+b > threshold*3+2，省去除法
+        return BACKEND.whiteMask(argb, srcPos, mask, maskPos, length, threshold * 3 + 2);
+    }
+
+    /**
+     * 產生負片，輸出為 TYPE_INT_RGB；大圖會依列切段平行運算
+     */
+    public static BufferedImage negative(BufferedImage source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        BufferedImage negativeImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] dst = ((DataBufferInt) negativeImg.getRaster().getDataBuffer()).getData();
+        PixelRowSource rows = PixelRowSource.of(source);
+        int[] packed = packedData(source);
+        int base = packed == null ? 0 : packedBase(source);
+        int stride = packed == null ? 0 : packedStride(source);
+
+        forEachBand(width, height, (fromY, toY) -> {
+            if (packed != null) {
+                for (int y = fromY; y < toY; y++) {
+                    negate(packed, base + y * stride, dst, y * width, width);
+                }
+                return;
+            }
+            int[] row = new int[width];
+            for (int y = fromY; y < toY; y++) {
+                rows.readRow(y, row);
+                negate(row, 0, dst, y * width, width);
+            }
+        });
+        return negativeImg;
+    }
+
+    /**
+     * 負責 [fromY, toY) 列的工作
+     */
+    interface BandTask {
+        void run(int fromY, int toY);
+    }
+
+    /**
+     * 依列切成數段，大圖交給 common pool 平行執行
+     */
+    static void forEachBand(int width, int height, BandTask task) {
+        long pixels = (long) width * height;
+        int bands = pixels < PARALLEL_THRESHOLD
+                ? 1
+                : Math.min(height, Runtime.getRuntime().availableProcessors() * 4);
+        if (bands <= 1) {
+            task.run(0, height);
+            return;
+        }
+        IntStream.range(0, bands)
+                .parallel()
+                .forEach(i -> task.run((int) ((long) height * i / bands), (int) ((long) height * (i + 1) / bands)));
+    }
+
+    /**
+     * TYPE_INT_ARGB / TYPE_INT_RGB 回傳底層陣列，其他類型回傳 null
+     */
+    private static int[] packedData(BufferedImage image) {
+        int type = image.getType();
+        WritableRaster raster = image.getRaster();
+        if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            return ((DataBufferInt) raster.getDataBuffer()).getData();
+        }
+        return null;
+    }
+
+    private static int packedBase(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        return raster.getDataBuffer().getOffset()
+                + sm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+    }
+
+    private static int packedStride(BufferedImage image) {
+        return ((SinglePixelPackedSampleModel) image.getRaster().getSampleModel()).getScanlineStride();
+    }
+
+    /**
+     * 純量實作，JIT 通常也能對這種迴圈做部分自動向量化
+     */
+    static final class Scalar implements Backend {
+        @Override
+        public void negate(int[] src, int srcPos, int[] dst, int dstPos, int length) {
+            for (int i = 0; i < length; i++) {
+                dst[dstPos + i] = ~src[srcPos + i] & 0x00FFFFFF;
+            }
+        }
+
+        @Override
+        public int whiteMask(int[] argb, int srcPos, byte[] mask, int maskPos, int length, int limit) {
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                int p = argb[srcPos + i];
+                int sum = ((p >> 16) & 0xFF) + ((p >> 8) & 0xFF) + (p & 0xFF);
+                int white = sum > limit ? 1 : 0;
+                mask[maskPos + i] = (byte) white;
+                count += white;
+            }
+            return count;
+        }
+    }
+}
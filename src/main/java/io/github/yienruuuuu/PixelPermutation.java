@@ -0,0 +1,75 @@
+package io.github.yienruuuuu;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 以金鑰決定的像素位置排列，把第 i 個要寫入的像素對應到 [0, size) 中的某個位置。
+ * <p>
+ * 以平衡 Feistel 網路在 2^(2h) ≥ size 的值域上做置換，超出 size 的結果再繼續套用 (cycle-walking)，
+ * 得到 [0, size) 上的一對一對應。每次查詢都是 O(1)，不需要建立整張圖大小的洗牌陣列。
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/3
+ */
+final class PixelPermutation {
+    private static final int ROUNDS = 6;
+
+    private final long size;
+    private final int halfBits;
+    private final long halfMask;
+    private final int[] roundKeys = new int[ROUNDS];
+
+    /**
+     * @param size 像素總數
+     * @param key  至少 24 bytes 的金鑰 (通常是 SHA-256 摘要)
+     */
+    PixelPermutation(long size, byte[] key) {
+        if (size <= 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("像素數量超出範圍: " + size);
+        }
+        this.size = size;
+        int bits = 64 - Long.numberOfLeadingZeros(size - 1);
+        this.halfBits = Math.max(1, (bits + 1) / 2);
+        this.halfMask = (1L << halfBits) - 1;
+        ByteBuffer buffer = ByteBuffer.wrap(key);
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = buffer.getInt(i * 4);
+        }
+    }
+
+    /**
+     * 第 index 個位置對應到的像素 (raster 順序的索引)
+     */
+    int map(int index) {
+        long x = index;
+        // 值域最多是 size 的 4 倍，平均走不到 4 次就會落回範圍內
+        do {
+            x = encrypt(x);
+        } while (x >= size);
+        return (int) x;
+    }
+
+    private long encrypt(long x) {
+        long left = x >>> halfBits;
+        long right = x & halfMask;
+        for (int key : roundKeys) {
+            long next = left ^ (mix((int) right ^ key) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    /**
+     * murmur3 的 finalizer，讓每一輪的輸出與輸入充分混合
+     */
+    private static long mix(int h) {
+        h *= 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.yienruuuuu;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * 一列一列提供 ARGB 像素的來源，讓演算法不必一次持有整張圖的二維陣列。
+ * <p>
+ * 實作必須允許多條執行緒同時讀取不同列。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/15
+ */
+interface PixelRowSource {
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * 將第 y 列的像素以 ARGB (non-premultiplied) 格式寫入 dst[0..width)
+     */
+    void readRow(int y, int[] dst);
+
+    /**
+     * 是否含有透明度；沒有的話 readRow 取得的 alpha 一律為 0xFF
+     */
+    default boolean hasAlpha() {
+        return true;
+    }
+
+    static PixelRowSource of(BufferedImage image) {
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && image.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            return new PackedIntRows(image);
+        }
+        return new PixelRowSource() {
+            @Override
+            public int getWidth() {
+                return image.getWidth();
+            }
+
+            @Override
+            public int getHeight() {
+                return image.getHeight();
+            }
+
+            @Override
+            public boolean hasAlpha() {
+                return image.getColorModel().hasAlpha();
+            }
+
+            @Override
+            public void readRow(int y, int[] dst) {
+                int width = image.getWidth();
+                image.getRGB(0, y, width, 1, dst, 0, width);
+            }
+        };
+    }
+
+    /**
+     * TYPE_INT_ARGB / TYPE_INT_RGB 直接從底層陣列複製整列，不經過 ColorModel 轉換
+     */
+    final class PackedIntRows implements PixelRowSource {
+        private final int[] data;
+        private final int base;
+        private final int stride;
+        private final int width;
+        private final int height;
+        private final boolean alpha;
+
+        private PackedIntRows(BufferedImage image) {
+            WritableRaster raster = image.getRaster();
+            SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            this.data = buffer.getData();
+            this.stride = sm.getScanlineStride();
+            this.base = buffer.getOffset()
+                    + sm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            this.alpha = image.getType() == BufferedImage.TYPE_INT_ARGB;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public boolean hasAlpha() {
+            return alpha;
+        }
+
+        @Override
+        public void readRow(int y, int[] dst) {
+            System.arraycopy(data, base + y * stride, dst, 0, width);
+            if (!alpha) {
+                for (int x = 0; x < width; x++) {
+                    dst[x] |= 0xFF000000;
+                }
+            }
+        }
+    }
+}
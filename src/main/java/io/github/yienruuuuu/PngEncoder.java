@@ -0,0 +1,420 @@
+package io.github.yienruuuuu;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 針對隱碼輸出調整過的 PNG 編碼器 (8-bit RGB / RGBA、非交錯)。
+ * <p>
+ * 與 ImageIO 相比可以指定 deflate 壓縮等級與列濾波策略，並把影像切成多段列、
+ * 各段在不同核心上獨立 deflate (每段以前一段結尾 32KB 為字典，以 SYNC_FLUSH 收尾)，
+ * 最後依序串成同一條 zlib 串流寫入 IDAT，Adler-32 以 combine 合併。parallelism 為 1 時不分段，
+ * 依序讀取每一列並邊壓縮邊寫出。
+ * 輸出是標準 PNG，ImageIO 與 {@link LsbStreamExtractor} 都能無損讀回。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/25
+ */
+public final class PngEncoder implements ImageEncoder {
+    static final PngEncoder DEFAULT = new PngEncoder(4, Filter.ADAPTIVE, Runtime.getRuntime().availableProcessors());
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IHDR = 0x49484452;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454E44;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int SEGMENT_BYTES = 256 * 1024;
+    private static final int MAX_CHUNK = 1 << 20;
+    private static final int ADLER_BASE = 65521;
+
+    /**
+     * 列濾波策略，ADAPTIVE 為 PNG 規範建議的逐列挑選絕對值總和最小的濾波
+     */
+    public enum Filter {
+        NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE
+    }
+
+    private final int level;
+    private final Filter filter;
+    private final int parallelism;
+    private final Executor executor;
+
+    public PngEncoder(int level, Filter filter, int parallelism) {
+        this(level, filter, parallelism, ForkJoinPool.commonPool());
+    }
+
+    public PngEncoder(int level, Filter filter, int parallelism, Executor executor) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("deflate 壓縮等級必須介於 0~9");
+        }
+        this.level = level;
+        this.filter = filter;
+        this.parallelism = Math.max(1, parallelism);
+        this.executor = executor;
+    }
+
+    @Override
+    public void write(BufferedImage image, WritableByteChannel out) throws IOException {
+        encode(PixelRowSource.of(image), out);
+    }
+
+    public void encode(PixelRowSource source, WritableByteChannel out) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int bytesPerPixel = source.hasAlpha() ? 4 : 3;
+        int rowBytes = 1 + width * bytesPerPixel;
+
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height)
+                .put((byte) 8)
+                .put((byte) (bytesPerPixel == 4 ? 6 : 2))
+                .put((byte) 0).put((byte) 0).put((byte) 0);
+        writeFully(out, ByteBuffer.wrap(SIGNATURE));
+        writeChunk(out, IHDR, header.array(), 0, 13);
+
+        // zlib header：CM=8、32K window，FLEVEL 依壓縮等級
+        byte[] zlibHeader = {0x78, (byte) (level <= 1 ? 0x01 : level <= 5 ? 0x5E : level == 6 ? 0x9C : 0xDA)};
+        writeChunk(out, IDAT, zlibHeader, 0, zlibHeader.length);
+
+        int rowsPerSegment = Math.max(1, SEGMENT_BYTES / rowBytes);
+        int segments = (height + rowsPerSegment - 1) / rowsPerSegment;
+        long adler = 1;
+
+        if (parallelism == 1 || segments == 1) {
+            adler = compressSequential(source, bytesPerPixel, out);
+        } else {
+            // 最多領先 parallelism * 2 段，避免壓縮結果在記憶體中堆積
+            Deque<CompletableFuture<Segment>> pending = new ArrayDeque<>();
+            int next = 0;
+            while (next < segments || !pending.isEmpty()) {
+                while (next < segments && pending.size() < parallelism * 2) {
+                    int from = next * rowsPerSegment;
+                    int to = Math.min(height, from + rowsPerSegment);
+                    boolean last = next == segments - 1;
+                    pending.add(CompletableFuture.supplyAsync(
+                            () -> compress(source, bytesPerPixel, from, to, last), executor));
+                    next++;
+                }
+                Segment segment = await(pending.poll());
+                writeIdat(out, segment.data, segment.length);
+                adler = combineAdler(adler, segment.adler, segment.rawLength);
+            }
+        }
+
+        byte[] trailer = ByteBuffer.allocate(4).putInt((int) adler).array();
+        writeChunk(out, IDAT, trailer, 0, 4);
+        writeChunk(out, IEND, new byte[0], 0, 0);
+    }
+
+    /**
+     * 一段列壓縮後的結果
+     */
+    private static final class Segment {
+        byte[] data;
+        int length;
+        long adler;
+        long rawLength;
+    }
+
+    /**
+     * 不分段，以同一個 Deflater 依序壓縮每一列，輸出累積到一段的大小就寫成 IDAT。
+     * 每列只依 0、1、2… 的順序讀取一次，所以來源也可以是只能依序讀取的串流
+     * (見 {@link PngScanlineReader#sequentialRows()})
+     *
+     * @return 整段未壓縮資料的 Adler-32
+     */
+    private long compressSequential(PixelRowSource source, int bytesPerPixel, WritableByteChannel out)
+            throws IOException {
+        int width = source.getWidth();
+        int rawRowBytes = width * bytesPerPixel;
+        int rowBytes = rawRowBytes + 1;
+
+        int[] argb = new int[width];
+        byte[] prior = new byte[rawRowBytes];
+        byte[] current = new byte[rawRowBytes];
+        byte[][] scratch = new byte[5][rowBytes];
+        Segment buffer = new Segment();
+        buffer.data = new byte[SEGMENT_BYTES];
+        Adler32 checksum = new Adler32();
+        Deflater deflater = new Deflater(level, true);
+        try {
+            for (int y = 0; y < source.getHeight(); y++) {
+                toBytes(source, y, argb, current, bytesPerPixel);
+                byte[] filtered = filterRow(current, prior, bytesPerPixel, scratch);
+                checksum.update(filtered, 0, rowBytes);
+                deflater.setInput(filtered, 0, rowBytes);
+                while (!deflater.needsInput()) {
+                    drain(deflater, buffer, Deflater.NO_FLUSH);
+                    flushIdat(out, buffer);
+                }
+                byte[] tmp = prior;
+                prior = current;
+                current = tmp;
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(deflater, buffer, Deflater.NO_FLUSH);
+                flushIdat(out, buffer);
+            }
+            writeIdat(out, buffer.data, buffer.length);
+            return checksum.getValue();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 緩衝累積超過一段時寫出並清空，讓依序壓縮的記憶體用量固定
+     */
+    private static void flushIdat(WritableByteChannel out, Segment buffer) throws IOException {
+        if (buffer.length >= SEGMENT_BYTES) {
+            writeIdat(out, buffer.data, buffer.length);
+            buffer.length = 0;
+        }
+    }
+
+    /**
+     * 濾波並 deflate [fromRow, toRow) 這一段；不是第一段時先把前 32KB 濾波後資料設為字典
+     */
+    private Segment compress(PixelRowSource source, int bytesPerPixel, int fromRow, int toRow, boolean last) {
+        int width = source.getWidth();
+        int rawRowBytes = width * bytesPerPixel;
+        int rowBytes = rawRowBytes + 1;
+
+        int[] argb = new int[width];
+        byte[] prior = new byte[rawRowBytes];
+        byte[] current = new byte[rawRowBytes];
+        byte[][] scratch = new byte[5][rowBytes];
+        Deflater deflater = new Deflater(level, true);
+        try {
+            int dictionaryRows = Math.min(fromRow, (DICTIONARY_SIZE + rowBytes - 1) / rowBytes);
+            int firstRow = fromRow - dictionaryRows;
+            if (firstRow > 0) {
+                toBytes(source, firstRow - 1, argb, prior, bytesPerPixel);
+            }
+
+            if (dictionaryRows > 0) {
+                byte[] dictionary = new byte[dictionaryRows * rowBytes];
+                for (int y = firstRow, pos = 0; y < fromRow; y++, pos += rowBytes) {
+                    toBytes(source, y, argb, current, bytesPerPixel);
+                    System.arraycopy(filterRow(current, prior, bytesPerPixel, scratch), 0, dictionary, pos, rowBytes);
+                    byte[] tmp = prior;
+                    prior = current;
+                    current = tmp;
+                }
+                int offset = Math.max(0, dictionary.length - DICTIONARY_SIZE);
+                deflater.setDictionary(dictionary, offset, dictionary.length - offset);
+            }
+
+            Segment segment = new Segment();
+            segment.data = new byte[Math.max(1024, (toRow - fromRow) * rowBytes / 2)];
+            Adler32 checksum = new Adler32();
+            for (int y = fromRow; y < toRow; y++) {
+                toBytes(source, y, argb, current, bytesPerPixel);
+                byte[] filtered = filterRow(current, prior, bytesPerPixel, scratch);
+                checksum.update(filtered, 0, rowBytes);
+                deflater.setInput(filtered, 0, rowBytes);
+                while (!deflater.needsInput()) {
+                    drain(deflater, segment, Deflater.NO_FLUSH);
+                }
+                byte[] tmp = prior;
+                prior = current;
+                current = tmp;
+            }
+
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain(deflater, segment, Deflater.NO_FLUSH);
+                }
+            } else {
+                // SYNC_FLUSH 讓這段輸出結束在位元組邊界，才能直接與下一段串接
+                while (drain(deflater, segment, Deflater.SYNC_FLUSH)) {
+                    // 輸出緩衝被填滿時要再呼叫一次，直到 flush 完成
+                }
+            }
+            segment.adler = checksum.getValue();
+            segment.rawLength = (long) (toRow - fromRow) * rowBytes;
+            return segment;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 執行一次 deflate 寫入 segment，回傳輸出緩衝是否被填滿
+     */
+    private static boolean drain(Deflater deflater, Segment segment, int flush) {
+        if (segment.data.length - segment.length < 512) {
+            segment.data = Arrays.copyOf(segment.data, segment.data.length * 2);
+        }
+        int space = segment.data.length - segment.length;
+        int n = deflater.deflate(segment.data, segment.length, space, flush);
+        segment.length += n;
+        return n == space;
+    }
+
+    private static void toBytes(PixelRowSource source, int y, int[] argb, byte[] dst, int bytesPerPixel) {
+        source.readRow(y, argb);
+        if (bytesPerPixel == 4) {
+            for (int x = 0, p = 0; x < argb.length; x++, p += 4) {
+                int c = argb[x];
+                dst[p] = (byte) (c >> 16);
+                dst[p + 1] = (byte) (c >> 8);
+                dst[p + 2] = (byte) c;
+                dst[p + 3] = (byte) (c >>> 24);
+            }
+        } else {
+            for (int x = 0, p = 0; x < argb.length; x++, p += 3) {
+                int c = argb[x];
+                dst[p] = (byte) (c >> 16);
+                dst[p + 1] = (byte) (c >> 8);
+                dst[p + 2] = (byte) c;
+            }
+        }
+    }
+
+    /**
+     * 依策略濾波，回傳「filter type byte + 濾波後資料」
+     */
+    private byte[] filterRow(byte[] cur, byte[] prev, int bpp, byte[][] scratch) {
+        if (filter != Filter.ADAPTIVE) {
+            int type = filter.ordinal();
+            applyFilter(type, cur, prev, bpp, scratch[type]);
+            return scratch[type];
+        }
+        int bestType = 0;
+        long bestScore = Long.MAX_VALUE;
+        for (int type = 0; type < 5; type++) {
+            long score = applyFilter(type, cur, prev, bpp, scratch[type]);
+            if (score < bestScore) {
+                bestScore = score;
+                bestType = type;
+            }
+        }
+        return scratch[bestType];
+    }
+
+    /**
+     * 套用單一 PNG 濾波，回傳濾波後各位元組 (視為有號數) 絕對值的總和
+     */
+    private static long applyFilter(int type, byte[] cur, byte[] prev, int bpp, byte[] out) {
+        out[0] = (byte) type;
+        int n = cur.length;
+        switch (type) {
+            case 1:
+                for (int i = 0; i < n; i++) {
+                    int a = i >= bpp ? cur[i - bpp] : 0;
+                    out[i + 1] = (byte) (cur[i] - a);
+                }
+                break;
+            case 2:
+                for (int i = 0; i < n; i++) {
+                    out[i + 1] = (byte) (cur[i] - prev[i]);
+                }
+                break;
+            case 3:
+                for (int i = 0; i < n; i++) {
+                    int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    out[i + 1] = (byte) (cur[i] - ((a + (prev[i] & 0xFF)) >>> 1));
+                }
+                break;
+            case 4:
+                for (int i = 0; i < n; i++) {
+                    int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                    out[i + 1] = (byte) (cur[i] - paeth(a, prev[i] & 0xFF, c));
+                }
+                break;
+            default:
+                System.arraycopy(cur, 0, out, 1, n);
+        }
+
+        long score = 0;
+        for (int i = 1; i <= n; i++) {
+            score += Math.abs(out[i]);
+        }
+        return score;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * zlib 的 adler32_combine：由兩段各自的 Adler-32 算出串接後的值
+     */
+    static long combineAdler(long adler1, long adler2, long length2) {
+        long rem = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= ((long) ADLER_BASE << 1)) sum2 -= ((long) ADLER_BASE << 1);
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return sum1 | (sum2 << 16);
+    }
+
+    private static Segment await(CompletableFuture<Segment> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("PNG 編碼被中斷");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static void writeIdat(WritableByteChannel out, byte[] data, int length) throws IOException {
+        for (int off = 0; off < length; off += MAX_CHUNK) {
+            writeChunk(out, IDAT, data, off, Math.min(MAX_CHUNK, length - off));
+        }
+    }
+
+    private static void writeChunk(WritableByteChannel out, int type, byte[] data, int off, int len) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer head = ByteBuffer.allocate(8).putInt(len).putInt(type);
+        crc.update(head.array(), 4, 4);
+        crc.update(data, off, len);
+        head.flip();
+        writeFully(out, head);
+        writeFully(out, ByteBuffer.wrap(data, off, len));
+        writeFully(out, ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip());
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package io.github.yienruuuuu;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 逐列解碼 PNG 的精簡 reader，只在需要時才解壓縮下一列。
+ * <p>
+ * JDK 內建的 PNGImageReader 即使指定了 source region 也會把整張圖的 IDAT 解壓縮完，
+ * 所以只想讀前幾列時改用這個類別。只支援最常見的 8-bit、非交錯 RGB / RGBA (本工具輸出的格式)，
+ * 其他格式請先用 {@link #isSupported()} 判斷並改走 ImageIO。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/10
+ */
+final class PngScanlineReader implements Closeable {
+    private static final long PNG_SIGNATURE = 0x89504E470D0A1A0AL;
+    private static final int IHDR = 0x49484452;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454E44;
+    private static final int TRNS = 0x74524E53;
+
+    /**
+     * 簽章加 IHDR chunk 的長度，{@link #openSupported(InputStream)} 需要 mark 的範圍
+     */
+    private static final int HEADER_LENGTH = 8 + 8 + 13 + 4;
+
+    private static final int COLOR_RGB = 2;
+    private static final int COLOR_RGBA = 6;
+
+    private final DataInputStream in;
+    private final int width;
+    private final int height;
+    private final int bitDepth;
+    private final int colorType;
+    private final int interlace;
+
+    private int bytesPerPixel;
+    private int transparentRgb = -1;
+    private DataInputStream pixels;
+    private Inflater inflater;
+    private byte[] current;
+    private byte[] prior;
+    private int rowsRead;
+
+    PngScanlineReader(InputStream input) throws IOException {
+        this.in = new DataInputStream(input);
+        if (in.readLong() != PNG_SIGNATURE) {
+            throw new IOException("不是 PNG 檔案");
+        }
+        int length = in.readInt();
+        if (in.readInt() != IHDR || length != 13) {
+            throw new IOException("PNG 缺少 IHDR");
+        }
+        width = in.readInt();
+        height = in.readInt();
+        // IHDR 的寬高是 signed int，損毀或惡意的檔案可能是 0、負數，或寬到一列的 byte 數溢位
+        if (width <= 0 || height <= 0 || width * 4L > Integer.MAX_VALUE) {
+            throw new IOException("PNG 寬高不合法: " + width + "x" + height);
+        }
+        bitDepth = in.readUnsignedByte();
+        colorType = in.readUnsignedByte();
+        in.readUnsignedByte(); // compression method，PNG 只有 deflate
+        in.readUnsignedByte(); // filter method，PNG 只有 adaptive
+        interlace = in.readUnsignedByte();
+        in.readInt(); // CRC
+    }
+
+    /**
+     * 串流開頭是這個 reader 支援的 PNG 時回傳 reader；其他格式 (包含不支援的 PNG 變體) 把串流重設回開頭並回傳 null，
+     * 讓呼叫端改交給 ImageIO。in 必須支援 mark / reset；開頭是 PNG 簽章但 IHDR 不合法時直接丟出 IOException
+     */
+    static PngScanlineReader openSupported(InputStream in) throws IOException {
+        in.mark(HEADER_LENGTH);
+        long signature;
+        try {
+            signature = new DataInputStream(in).readLong();
+        } catch (EOFException e) {
+            signature = 0;
+        }
+        in.reset();
+        if (signature != PNG_SIGNATURE) {
+            return null;
+        }
+        in.mark(HEADER_LENGTH);
+        PngScanlineReader png = new PngScanlineReader(in);
+        if (!png.isSupported()) {
+            in.reset();
+            return null;
+        }
+        return png;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    boolean hasAlpha() {
+        return colorType == COLOR_RGBA || transparentRgb >= 0;
+    }
+
+    /**
+     * 是否為這個 reader 能處理的格式；不支援時呼叫端應改用 ImageIO
+     */
+    boolean isSupported() {
+        return bitDepth == 8 && interlace == 0 && (colorType == COLOR_RGB || colorType == COLOR_RGBA);
+    }
+
+    /**
+     * 解碼下一列並轉成 ARGB 填入 dst (長度至少為 width)
+     *
+     * @return 沒有下一列時回傳 false
+     */
+    boolean readRow(int[] dst) throws IOException {
+        if (rowsRead >= height) {
+            return false;
+        }
+        if (pixels == null) {
+            startImageData();
+        }
+
+        int filter = pixels.read();
+        if (filter < 0) {
+            throw new EOFException("PNG 影像資料提早結束");
+        }
+        byte[] tmp = prior;
+        prior = current;
+        current = tmp;
+        pixels.readFully(current);
+        unfilter(filter, current, prior, bytesPerPixel);
+
+        if (colorType == COLOR_RGBA) {
+            for (int x = 0, p = 0; x < width; x++, p += 4) {
+                dst[x] = ((current[p + 3] & 0xFF) << 24)
+                        | ((current[p] & 0xFF) << 16)
+                        | ((current[p + 1] & 0xFF) << 8)
+                        | (current[p + 2] & 0xFF);
+            }
+        } else {
+            for (int x = 0, p = 0; x < width; x++, p += 3) {
+                int rgb = ((current[p] & 0xFF) << 16)
+                        | ((current[p + 1] & 0xFF) << 8)
+                        | (current[p + 2] & 0xFF);
+                dst[x] = rgb == transparentRgb ? rgb : 0xFF000000 | rgb;
+            }
+        }
+        rowsRead++;
+        return true;
+    }
+
+    /**
+     * 包成只能依序讀取的 {@link PixelRowSource}：readRow 必須依 0、1、2… 的順序呼叫 (可重複讀取最後一列)，
+     * 不符合 PixelRowSource 多執行緒讀取的要求，只能交給單執行緒逐列消費的呼叫端，
+     * 例如 parallelism 為 1 的 {@link PngEncoder}。會先解碼第一列，hasAlpha 才能反映 tRNS；
+     * 解碼失敗時 readRow 丟出 {@link UncheckedIOException}
+     */
+    PixelRowSource sequentialRows() throws IOException {
+        int[] last = new int[width];
+        if (!readRow(last)) {
+            throw new IOException("PNG 沒有影像資料");
+        }
+        boolean alpha = hasAlpha();
+        return new PixelRowSource() {
+            private int lastY;
+
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public boolean hasAlpha() {
+                return alpha;
+            }
+
+            @Override
+            public void readRow(int y, int[] dst) {
+                if (y == lastY + 1) {
+                    try {
+                        if (!PngScanlineReader.this.readRow(last)) {
+                            throw new EOFException("PNG 影像資料提早結束");
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    lastY = y;
+                } else if (y != lastY) {
+                    throw new IllegalStateException("PNG 只能依序讀取，目前在第 " + lastY + " 列，要求第 " + y + " 列");
+                }
+                System.arraycopy(last, 0, dst, 0, width);
+            }
+        };
+    }
+
+    /**
+     * 跳過 IDAT 之前的 chunk (只解析 tRNS)，並在第一個 IDAT 上建立解壓縮串流
+     */
+    private void startImageData() throws IOException {
+        if (!isSupported()) {
+            throw new IOException("不支援的 PNG 格式: bitDepth=" + bitDepth + ", colorType=" + colorType);
+        }
+        while (true) {
+            int length = in.readInt();
+            int type = in.readInt();
+            if (type == IDAT) {
+                bytesPerPixel = colorType == COLOR_RGBA ? 4 : 3;
+                current = new byte[width * bytesPerPixel];
+                prior = new byte[current.length];
+                inflater = new Inflater();
+                pixels = new DataInputStream(new InflaterInputStream(new IdatInputStream(in, length), inflater, 8192));
+                return;
+            }
+            if (type == IEND) {
+                throw new IOException("PNG 沒有影像資料");
+            }
+            if (type == TRNS && colorType == COLOR_RGB && length == 6) {
+                transparentRgb = (in.readUnsignedShort() & 0xFF) << 16
+                        | (in.readUnsignedShort() & 0xFF) << 8
+                        | (in.readUnsignedShort() & 0xFF);
+                in.readInt();
+                continue;
+            }
+            in.skipNBytes(length + 4L);
+        }
+    }
+
+    static void unfilter(int filter, byte[] cur, byte[] prev, int bpp) throws IOException {
+        int n = cur.length;
+        switch (filter) {
+            case 0:
+                break;
+            case 1:
+                for (int i = bpp; i < n; i++) {
+                    cur[i] += cur[i - bpp];
+                }
+                break;
+            case 2:
+                for (int i = 0; i < n; i++) {
+                    cur[i] += prev[i];
+                }
+                break;
+            case 3:
+                for (int i = 0; i < bpp; i++) {
+                    cur[i] += (prev[i] & 0xFF) >>> 1;
+                }
+                for (int i = bpp; i < n; i++) {
+                    cur[i] += ((cur[i - bpp] & 0xFF) + (prev[i] & 0xFF)) >>> 1;
+                }
+                break;
+            case 4:
+                for (int i = 0; i < bpp; i++) {
+                    cur[i] += prev[i];
+                }
+                for (int i = bpp; i < n; i++) {
+                    cur[i] += paeth(cur[i - bpp] & 0xFF, prev[i] & 0xFF, prev[i - bpp] & 0xFF);
+                }
+                break;
+            default:
+                throw new IOException("未知的 PNG filter: " + filter);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        return pb <= pc ? b : c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) {
+            inflater.end();
+        }
+        in.close();
+    }
+
+    /**
+     * 把連續的 IDAT chunk 串成一條資料流，略過中間的 CRC 與 chunk header
+     */
+    private static final class IdatInputStream extends InputStream {
+        private final DataInputStream in;
+        private int remaining;
+        private boolean finished;
+
+        IdatInputStream(DataInputStream in, int firstLength) {
+            this.in = in;
+            this.remaining = firstLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (remaining == 0) {
+                if (finished || !nextChunk()) {
+                    return -1;
+                }
+            }
+            int n = in.read(b, off, Math.min(len, remaining));
+            if (n < 0) {
+                throw new EOFException("PNG IDAT 提早結束");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        private boolean nextChunk() throws IOException {
+            in.readInt(); // 前一個 IDAT 的 CRC
+            int length = in.readInt();
+            if (in.readInt() != IDAT) {
+                finished = true;
+                return false;
+            }
+            remaining = length;
+            return true;
+        }
+    }
+}
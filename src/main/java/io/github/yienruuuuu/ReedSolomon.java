@@ -0,0 +1,247 @@
+package io.github.yienruuuuu;
+
+/**
+ * RS(255,223) 錯誤更正碼，GF(256) 以原始多項式 x^8+x^4+x^3+x^2+1 (0x11D) 建立。
+ * <p>
+ * 每個區塊 223 bytes 資料 + 32 bytes 同位元，可以更正任意 16 個 byte 錯誤；最後一個區塊資料不足 223 bytes 時
+ * 使用縮短碼 (資料 + 32 bytes)。乘除法全部查 log / exp 表，沒有錯誤時解碼只需要算一次 syndrome。
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+final class ReedSolomon {
+    /**
+     * 每個區塊的同位元 bytes 數
+     */
+    static final int PARITY = 32;
+    /**
+     * 每個完整區塊的資料 bytes 數
+     */
+    static final int BLOCK_DATA = 255 - PARITY;
+
+    private static final int PRIMITIVE = 0x11D;
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+    /**
+     * 生成多項式 g(x) = (x - α^0)(x - α^1)...(x - α^31)，由高次項到低次項排列
+     */
+    private static final int[] GENERATOR;
+    /**
+     * GENERATOR 各係數的 log (生成多項式的係數都不為 0)
+     */
+    private static final int[] GENERATOR_LOG = new int[PARITY + 1];
+    /**
+     * SYNDROME_MUL[i * 256 + s] = s · α^i，計算 syndrome 時每個 byte 每個根只需要查一次表
+     */
+    private static final byte[] SYNDROME_MUL = new byte[PARITY * 256];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if ((x & 0x100) != 0) {
+                x ^= PRIMITIVE;
+            }
+        }
+        // 多複製一份，mul 時兩個 log 相加不必再取餘數
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+
+        int[] g = {1};
+        for (int i = 0; i < PARITY; i++) {
+            int[] next = new int[g.length + 1];
+            for (int j = 0; j < g.length; j++) {
+                next[j] ^= g[j];
+                next[j + 1] ^= mul(g[j], EXP[i]);
+            }
+            g = next;
+        }
+        GENERATOR = g;
+        for (int i = 0; i <= PARITY; i++) {
+            GENERATOR_LOG[i] = LOG[g[i]];
+        }
+        for (int i = 0; i < PARITY; i++) {
+            for (int v = 0; v < 256; v++) {
+                SYNDROME_MUL[i * 256 + v] = (byte) mul(v, EXP[i]);
+            }
+        }
+    }
+
+    private ReedSolomon() {
+    }
+
+    private static int mul(int a, int b) {
+        return a == 0 || b == 0 ? 0 : EXP[LOG[a] + LOG[b]];
+    }
+
+    private static int div(int a, int b) {
+        return a == 0 ? 0 : EXP[LOG[a] + 255 - LOG[b]];
+    }
+
+    /**
+     * 加上同位元後的總長度
+     */
+    static long encodedLength(long dataLength) {
+        return dataLength + (dataLength + BLOCK_DATA - 1) / BLOCK_DATA * PARITY;
+    }
+
+    /**
+     * 編碼後不超過 encodedBytes 時，最多能放多少 bytes 資料
+     */
+    static long maxDataLength(long encodedBytes) {
+        if (encodedBytes <= 0) {
+            return 0;
+        }
+        long blocks = encodedBytes / 255;
+        long rest = encodedBytes % 255;
+        return blocks * BLOCK_DATA + Math.max(0, rest - PARITY);
+    }
+
+    /**
+     * 依區塊編碼，每個區塊為「資料 + 32 bytes 同位元」
+     */
+    static byte[] encode(byte[] data) {
+        byte[] out = new byte[(int) encodedLength(data.length)];
+        int outPos = 0;
+        for (int pos = 0; pos < data.length; pos += BLOCK_DATA) {
+            int length = Math.min(BLOCK_DATA, data.length - pos);
+            System.arraycopy(data, pos, out, outPos, length);
+            parity(data, pos, length, out, outPos + length);
+            outPos += length + PARITY;
+        }
+        return out;
+    }
+
+    /**
+     * 以 LFSR 計算 data(x)·x^32 除以 g(x) 的餘式
+     */
+    private static void parity(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        int[] remainder = new int[PARITY];
+        for (int i = 0; i < length; i++) {
+            int feedback = (data[offset + i] & 0xFF) ^ remainder[0];
+            if (feedback == 0) {
+                System.arraycopy(remainder, 1, remainder, 0, PARITY - 1);
+                remainder[PARITY - 1] = 0;
+                continue;
+            }
+            int logFeedback = LOG[feedback];
+            for (int j = 0; j < PARITY - 1; j++) {
+                remainder[j] = remainder[j + 1] ^ EXP[logFeedback + GENERATOR_LOG[j + 1]];
+            }
+            remainder[PARITY - 1] = EXP[logFeedback + GENERATOR_LOG[PARITY]];
+        }
+        for (int j = 0; j < PARITY; j++) {
+            out[outOffset + j] = (byte) remainder[j];
+        }
+    }
+
+    /**
+     * 就地更正一個區塊 block[0, length)，length 為資料長度 + 32
+     *
+     * @return 錯誤超過可更正的數量時回傳 false
+     */
+    static boolean decode(byte[] block, int length) {
+        // 以 Horner 法同時計算 32 個 syndrome S_i = c(α^i)
+        int[] syndromes = new int[PARITY];
+        for (int j = 0; j < length; j++) {
+            int b = block[j] & 0xFF;
+            for (int i = 0; i < PARITY; i++) {
+                syndromes[i] = (SYNDROME_MUL[(i << 8) | syndromes[i]] & 0xFF) ^ b;
+            }
+        }
+        boolean clean = true;
+        for (int s : syndromes) {
+            clean &= s == 0;
+        }
+        if (clean) {
+            return true;
+        }
+
+        // Berlekamp-Massey 求錯誤位置多項式 Λ(x)，係數由低次到高次
+        int[] lambda = new int[PARITY + 1];
+        int[] previous = new int[PARITY + 1];
+        lambda[0] = 1;
+        previous[0] = 1;
+        int errors = 0;
+        int shift = 1;
+        int lastDiscrepancy = 1;
+        for (int n = 0; n < PARITY; n++) {
+            int d = syndromes[n];
+            for (int i = 1; i <= errors; i++) {
+                d ^= mul(lambda[i], syndromes[n - i]);
+            }
+            if (d == 0) {
+                shift++;
+                continue;
+            }
+            int coefficient = div(d, lastDiscrepancy);
+            if (2 * errors <= n) {
+                int[] saved = lambda.clone();
+                for (int i = 0; i + shift <= PARITY; i++) {
+                    lambda[i + shift] ^= mul(coefficient, previous[i]);
+                }
+                errors = n + 1 - errors;
+                previous = saved;
+                lastDiscrepancy = d;
+                shift = 1;
+            } else {
+                for (int i = 0; i + shift <= PARITY; i++) {
+                    lambda[i + shift] ^= mul(coefficient, previous[i]);
+                }
+                shift++;
+            }
+        }
+        if (errors * 2 > PARITY) {
+            return false;
+        }
+
+        // Ω(x) = S(x)Λ(x) mod x^32
+        int[] omega = new int[PARITY];
+        for (int i = 0; i < PARITY; i++) {
+            int v = 0;
+            for (int j = 0; j <= Math.min(i, errors); j++) {
+                v ^= mul(lambda[j], syndromes[i - j]);
+            }
+            omega[i] = v;
+        }
+
+        // Chien search：位置 p (block[length-1-p]) 有錯誤時 Λ(α^-p) = 0，再以 Forney 公式求錯誤值
+        int found = 0;
+        for (int p = 0; p < length; p++) {
+            int inverse = EXP[(255 - p) % 255];
+            int value = 0;
+            int power = 1;
+            for (int i = 0; i <= errors; i++) {
+                value ^= mul(lambda[i], power);
+                power = mul(power, inverse);
+            }
+            if (value != 0) {
+                continue;
+            }
+            int numerator = 0;
+            power = 1;
+            for (int i = 0; i < PARITY; i++) {
+                numerator ^= mul(omega[i], power);
+                power = mul(power, inverse);
+            }
+            // 特徵值 2 下的形式導數只剩奇次項：Λ'(x) = Λ1 + Λ3·x^2 + ...
+            int derivative = 0;
+            int inverseSquared = mul(inverse, inverse);
+            power = 1;
+            for (int i = 1; i <= errors; i += 2) {
+                derivative ^= mul(lambda[i], power);
+                power = mul(power, inverseSquared);
+            }
+            if (derivative == 0) {
+                return false;
+            }
+            int magnitude = mul(EXP[p % 255], div(numerator, derivative));
+            block[length - 1 - p] ^= (byte) magnitude;
+            found++;
+        }
+        return found == errors;
+    }
+}
@@ -0,0 +1,454 @@
+package io.github.yienruuuuu;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * 找出圖片中「接近白色」像素最多、彼此不重疊的多個文字放置區域，同一張圖可以查詢多種區域大小。
+ * <p>
+ * 建立 {@link Index} 時只掃描整張圖一次：每個像素的白色判斷壓成 1 bit 的遮罩，
+ * 同時把每個 cellSize × cellSize 格子的白像素數做成降解析度的積分圖 (summed-area table)。
+ * 查詢時先用格子積分圖算出每一塊起點範圍的上界，依上界由大到小逐塊以遮罩精算，
+ * 上界比目前結果還小的區塊完全不必展開 (branch and bound)；有明顯白色區域的圖通常只需展開極少數區塊，
+ * 雜訊般的圖上界較鬆，最差情況退化為逐點精算。
+ * 結果的白像素數與逐點窮舉後依序挑選不重疊區域相同，只有同分時挑中的位置可能不同 (會偏向左上方)。
+ * <p>
+ * 遮罩佔 width × height / 8 bytes，換來同一份索引可以反覆查詢，批次處理經由
+ * {@link InvertSteganography#placeTexts} 使用；只找一種大小的最佳位置時
+ * ({@link InvertSteganography#placeText}) 改用記憶體與圖片高度無關的 {@link WhiteRegionFinder}。
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/3
+ */
+public final class RegionPlacer {
+    private static final int DEFAULT_CELL_SIZE = 8;
+    /**
+     * 每個 band 至少負責的格子列數，太少的話排程成本比掃描本身還高
+     */
+    private static final int MIN_CELL_ROWS_PER_BAND = 32;
+    /**
+     * 精算時一次處理 BLOCK_CELLS × BLOCK_CELLS 個格子的起點：區塊越大上界越鬆，但局部積分圖被越多起點分攤
+     */
+    private static final int BLOCK_CELLS = 4;
+    /**
+     * 分數高的在前，同分時依 (y, x) 順序
+     */
+    private static final Comparator<Candidate> CANDIDATE_ORDER = Comparator
+            .comparingInt((Candidate c) -> -c.score)
+            .thenComparingInt(c -> c.y)
+            .thenComparingInt(c -> c.x);
+
+    private final int whiteThreshold;
+    private final int cellSize;
+
+    public RegionPlacer(int whiteThreshold) {
+        this(whiteThreshold, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * @param cellSize 降解析度格子的邊長；越小上界越緊，但格子積分圖越大
+     */
+    public RegionPlacer(int whiteThreshold, int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("格子大小必須大於 0");
+        }
+        this.whiteThreshold = whiteThreshold;
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * 一個放置區域：左上角座標、大小與其中的白像素數量
+     */
+    public static final class Placement {
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final int whiteCount;
+
+        Placement(int x, int y, int width, int height, int whiteCount) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.whiteCount = whiteCount;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getWhiteCount() {
+            return whiteCount;
+        }
+
+        boolean overlaps(int ox, int oy, int ow, int oh) {
+            return ox < x + width && x < ox + ow && oy < y + height && y < oy + oh;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + x + ", " + y + ") " + width + "x" + height + " 白像素 " + whiteCount;
+        }
+    }
+
+    public Index index(BufferedImage image) {
+        return index(PixelRowSource.of(image), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 掃描整張圖建立索引，最多切成 parallelism 個 band 並行
+     */
+    Index index(PixelRowSource source, int parallelism) {
+        return new Index(source, whiteThreshold, cellSize, parallelism);
+    }
+
+    /**
+     * 對每一種區域大小各找出最多 topK 個不重疊的位置，整張圖只掃描一次
+     */
+    public Map<Dimension, List<Placement>> place(BufferedImage image, List<Dimension> sizes, int topK) {
+        Index index = index(image);
+        Map<Dimension, List<Placement>> results = new LinkedHashMap<>();
+        for (Dimension size : sizes) {
+            results.put(size, index.top(size.width, size.height, topK));
+        }
+        return results;
+    }
+
+    /**
+     * 一張圖的白色遮罩與格子積分圖，建立後可以重複查詢、多執行緒共用
+     */
+    public static final class Index {
+        private final int width;
+        private final int height;
+        private final int cellSize;
+        private final int gridWidth;
+        private final int gridHeight;
+        private final int wordsPerRow;
+        /**
+         * 白色遮罩，每列 wordsPerRow 個 long，第 x 個像素在 bit (x & 63)
+         */
+        private final long[] mask;
+        /**
+         * 格子積分圖，大小 (gridHeight + 1) × (gridWidth + 1)，第 0 列與第 0 行為 0
+         */
+        private final long[] cellSums;
+
+        private Index(PixelRowSource source, int whiteThreshold, int cellSize, int parallelism) {
+            this.width = source.getWidth();
+            this.height = source.getHeight();
+            this.cellSize = cellSize;
+            this.gridWidth = (width + cellSize - 1) / cellSize;
+            this.gridHeight = (height + cellSize - 1) / cellSize;
+            this.wordsPerRow = (width + 63) >>> 6;
+            this.mask = new long[Math.multiplyExact(wordsPerRow, height)];
+
+            // 每個 band 負責整數個格子列，各自寫入不同的格子，不需要合併
+            int[] cells = new int[gridWidth * gridHeight];
+            int bands = Math.max(1, Math.min(parallelism, gridHeight / MIN_CELL_ROWS_PER_BAND));
+            IntStream.range(0, bands)
+                    .parallel()
+                    .forEach(i -> scanBand(source, whiteThreshold, cells,
+                            (int) ((long) gridHeight * i / bands), (int) ((long) gridHeight * (i + 1) / bands)));
+
+            int stride = gridWidth + 1;
+            this.cellSums = new long[stride * (gridHeight + 1)];
+            for (int cy = 0; cy < gridHeight; cy++) {
+                long rowSum = 0;
+                for (int cx = 0; cx < gridWidth; cx++) {
+                    rowSum += cells[cy * gridWidth + cx];
+                    cellSums[(cy + 1) * stride + cx + 1] = cellSums[cy * stride + cx + 1] + rowSum;
+                }
+            }
+        }
+
+        private void scanBand(PixelRowSource source, int whiteThreshold, int[] cells, int fromCellY, int toCellY) {
+            int[] row = new int[width];
+            byte[] white = new byte[width];
+            int toY = Math.min(height, toCellY * cellSize);
+            for (int y = fromCellY * cellSize; y < toY; y++) {
+                source.readRow(y, row);
+                if (PixelKernels.whiteMask(row, 0, white, 0, width, whiteThreshold) == 0) {
+                    continue;
+                }
+                int cellRow = (y / cellSize) * gridWidth;
+                int wordBase = y * wordsPerRow;
+                for (int x = 0; x < width; x++) {
+                    if (white[x] != 0) {
+                        mask[wordBase + (x >>> 6)] |= 1L << x;
+                        cells[cellRow + x / cellSize]++;
+                    }
+                }
+            }
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * 區域 [x, x+w) × [y, y+h) 內的白像素數
+         */
+        public int count(int x, int y, int w, int h) {
+            int total = 0;
+            for (int row = y; row < y + h; row++) {
+                total += rowCount(row, x, x + w);
+            }
+            return total;
+        }
+
+        private int rowCount(int row, int fromX, int toX) {
+            int base = row * wordsPerRow;
+            int total = 0;
+            int x = fromX;
+            while (x < toX) {
+                int bit = x & 63;
+                int n = Math.min(64 - bit, toX - x);
+                long word = mask[base + (x >>> 6)] >>> bit;
+                total += Long.bitCount(n == 64 ? word : word & ((1L << n) - 1));
+                x += n;
+            }
+            return total;
+        }
+
+        /**
+         * 找出最多 k 個互不重疊的 regionWidth × regionHeight 區域，依白像素數由多到少排列；
+         * 區域比圖片大時回傳空 list
+         */
+        public List<Placement> top(int regionWidth, int regionHeight, int k) {
+            if (regionWidth <= 0 || regionHeight <= 0) {
+                throw new IllegalArgumentException("區域寬高必須大於 0");
+            }
+            if (regionWidth > width || regionHeight > height || k <= 0) {
+                return Collections.emptyList();
+            }
+            // 白像素數以 int 計算，區塊上界也要放得進排序鍵的高 31 bits
+            if ((long) regionWidth * regionHeight > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("區域面積不能超過 " + Integer.MAX_VALUE + " 個像素");
+            }
+            return new Query(regionWidth, regionHeight).run(k);
+        }
+
+        private static void siftDown(long[] heap, int i, int size) {
+            long value = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] > heap[child]) {
+                    child++;
+                }
+                if (heap[child] <= value) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+        }
+
+        /**
+         * 涵蓋像素範圍 [x0, x1) × [y0, y1) 的所有格子的白像素總數 (不小於範圍內的實際數量)
+         */
+        private long cellSum(int x0, int y0, int x1, int y1) {
+            int cx0 = x0 / cellSize;
+            int cy0 = y0 / cellSize;
+            int cx1 = Math.min(gridWidth, (x1 + cellSize - 1) / cellSize);
+            int cy1 = Math.min(gridHeight, (y1 + cellSize - 1) / cellSize);
+            int stride = gridWidth + 1;
+            return cellSums[cy1 * stride + cx1] - cellSums[cy0 * stride + cx1]
+                    - cellSums[cy1 * stride + cx0] + cellSums[cy0 * stride + cx0];
+        }
+
+        /**
+         * 一次查詢的狀態，各查詢之間不共用，所以同一個 Index 可以同時被多條執行緒查詢
+         */
+        private final class Query {
+            private final int regionWidth;
+            private final int regionHeight;
+            private final int maxX;
+            private final int maxY;
+            private final int blockSize;
+            private final int blocksX;
+            private final List<Placement> results = new ArrayList<>();
+            private int[] window = new int[0];
+
+            Query(int regionWidth, int regionHeight) {
+                this.regionWidth = regionWidth;
+                this.regionHeight = regionHeight;
+                this.maxX = width - regionWidth;
+                this.maxY = height - regionHeight;
+                this.blockSize = cellSize * BLOCK_CELLS;
+                this.blocksX = maxX / blockSize + 1;
+            }
+
+            List<Placement> run(int k) {
+                // 每一塊起點範圍的上界 (高 32 bits) 與反轉的區塊編號，堆成 max-heap 後只取出需要展開的區塊，
+                // 上界相同時先展開左上方的區塊；上界不會超過區域面積，大片白色區域因此可以直接和精算結果打平而不必逐塊展開
+                long area = (long) regionWidth * regionHeight;
+                int blocksY = maxY / blockSize + 1;
+                long[] blocks = new long[Math.multiplyExact(blocksX, blocksY)];
+                for (int block = 0; block < blocks.length; block++) {
+                    int x0 = (block % blocksX) * blockSize;
+                    int y0 = (block / blocksX) * blockSize;
+                    long bound = Math.min(area, cellSum(x0, y0, lastX(x0) + regionWidth, lastY(y0) + regionHeight));
+                    blocks[block] = bound << 32 | (Integer.MAX_VALUE - block);
+                }
+                int remaining = blocks.length;
+                for (int i = remaining / 2 - 1; i >= 0; i--) {
+                    siftDown(blocks, i, remaining);
+                }
+
+                // 每個展開過的區塊只在佇列中放它目前最好的位置
+                PriorityQueue<Candidate> exact = new PriorityQueue<>(CANDIDATE_ORDER);
+                while (results.size() < k) {
+                    long bound = remaining > 0 ? blocks[0] >>> 32 : -1;
+                    Candidate best = exact.peek();
+                    // 已精算的位置不小於所有未展開區塊的上界時，它就是目前的最大值
+                    if (best != null && best.score >= bound) {
+                        exact.poll();
+                        if (!overlapsAny(results, best.x, best.y, regionWidth, regionHeight)) {
+                            results.add(new Placement(best.x, best.y, regionWidth, regionHeight, best.score));
+                        }
+                        // 同一塊內可能還有不和已選區域重疊的起點；已選的區域只會增加，重算後的最佳值不會變大，放回佇列仍然正確
+                        addBest(best.block, exact);
+                        continue;
+                    }
+                    if (remaining == 0) {
+                        break;
+                    }
+                    int block = Integer.MAX_VALUE - (int) blocks[0];
+                    blocks[0] = blocks[--remaining];
+                    siftDown(blocks, 0, remaining);
+                    addBest(block, exact);
+                }
+                return results;
+            }
+
+            private int lastX(int x0) {
+                return Math.min(x0 + blockSize - 1, maxX);
+            }
+
+            private int lastY(int y0) {
+                return Math.min(y0 + blockSize - 1, maxY);
+            }
+
+            /**
+             * 以遮罩建立這一塊的局部積分圖，找出起點在這一塊內、不和已選區域重疊的最佳位置放進佇列
+             */
+            private void addBest(int block, PriorityQueue<Candidate> queue) {
+                int x0 = (block % blocksX) * blockSize;
+                int y0 = (block / blocksX) * blockSize;
+                int x1 = lastX(x0);
+                int y1 = lastY(y0);
+                if (coveredBy(results, x0, y0, x1, y1, regionWidth, regionHeight)) {
+                    return;
+                }
+
+                int w = x1 - x0 + regionWidth;
+                int h = y1 - y0 + regionHeight;
+                int stride = w + 1;
+                int size = stride * (h + 1);
+                if (window.length < size) {
+                    window = new int[size];
+                }
+                Arrays.fill(window, 0, stride, 0);
+                for (int dy = 0; dy < h; dy++) {
+                    int base = (y0 + dy) * wordsPerRow;
+                    int above = dy * stride;
+                    int current = above + stride;
+                    window[current] = 0;
+                    int rowSum = 0;
+                    for (int dx = 0; dx < w; dx++) {
+                        int x = x0 + dx;
+                        rowSum += (int) (mask[base + (x >>> 6)] >>> x) & 1;
+                        window[current + dx + 1] = window[above + dx + 1] + rowSum;
+                    }
+                }
+
+                int bestScore = -1, bestX = 0, bestY = 0;
+                for (int y = y0; y <= y1; y++) {
+                    int top = (y - y0) * stride;
+                    int bottom = top + regionHeight * stride;
+                    for (int x = x0; x <= x1; x++) {
+                        int left = x - x0;
+                        int right = left + regionWidth;
+                        int count = window[bottom + right] - window[top + right] - window[bottom + left] + window[top + left];
+                        if (count > bestScore && !overlapsAny(results, x, y, regionWidth, regionHeight)) {
+                            bestScore = count;
+                            bestX = x;
+                            bestY = y;
+                        }
+                    }
+                }
+                if (bestScore >= 0) {
+                    queue.add(new Candidate(bestScore, bestX, bestY, block));
+                }
+            }
+        }
+
+        private static boolean overlapsAny(List<Placement> placements, int x, int y, int w, int h) {
+            for (Placement p : placements) {
+                if (p.overlaps(x, y, w, h)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 起點在 [x0, x1] × [y0, y1] 的每個位置是否都和某個已選區域重疊
+         */
+        private static boolean coveredBy(List<Placement> placements, int x0, int y0, int x1, int y1, int w, int h) {
+            for (Placement p : placements) {
+                if (x1 < p.x + p.width && x0 + w > p.x && y1 < p.y + p.height && y0 + h > p.y) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 已精算的起點位置，以及它所屬的區塊
+     */
+    private static final class Candidate {
+        private final int score;
+        private final int x;
+        private final int y;
+        private final int block;
+
+        Candidate(int score, int x, int y, int block) {
+            this.score = score;
+            this.x = x;
+            this.y = y;
+            this.block = block;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package io.github.yienruuuuu;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 各處程式碼回報階段耗時用的進入點，實際的統計交給目前安裝的 {@link StageRecorder}。
+ * <p>
+ * 沒有安裝 recorder 時 {@link #start(String)} 直接回傳共用的空 span，不呼叫 {@code System.nanoTime()}，
+ * 所以埋點可以留在熱路徑上。記憶體配置量以 {@code com.sun.management.ThreadMXBean} 量測目前執行緒，
+ * 交給 common pool 平行處理的部分 (例如大圖的負片) 不會算進去。
+ *
+ * @author Eric.Lee
+ * Date: 2025/5/20
+ */
+public final class StageMetrics {
+    public static final String READ = "read";
+    public static final String DECODE = "decode";
+    public static final String COMPRESS = "compress";
+    public static final String CONVERT = "convert";
+    public static final String PACK = "pack";
+    public static final String EXTRACT = "extract";
+    public static final String ENCODE = "encode";
+    public static final String WRITE = "write";
+    public static final String REGION_SEARCH = "region_search";
+    public static final String FONT_FIT = "font_fit";
+    public static final String NEGATIVE = "negative";
+    /**
+     * 整筆工作 (一張圖或一個 HTTP 請求) 層級的失敗
+     */
+    public static final String EMBED = "embed";
+    public static final String REQUEST = "request";
+
+    public static final String IMAGES_EMBEDDED = "images.embedded";
+    public static final String IMAGES_EXTRACTED = "images.extracted";
+    public static final String BYTES_EMBEDDED = "bytes.embedded";
+
+    private static final Span NOOP_SPAN = new Span(StageRecorder.NOOP, null);
+
+    private static volatile StageRecorder recorder = StageRecorder.NOOP;
+
+    private StageMetrics() {
+    }
+
+    /**
+     * 第一次真正量測時才載入 java.management，沒有安裝 recorder 的短命令不必付這段啟動成本
+     */
+    private static final class Allocation {
+        static final com.sun.management.ThreadMXBean THREADS = loadThreadBean();
+    }
+
+    private static com.sun.management.ThreadMXBean loadThreadBean() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+                if (bean.isThreadAllocatedMemorySupported()) {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                    return bean;
+                }
+            }
+        } catch (UnsupportedOperationException | SecurityException e) {
+            // 無法量測時只記錄耗時
+        }
+        return null;
+    }
+
+    public static void install(StageRecorder stageRecorder) {
+        recorder = stageRecorder == null ? StageRecorder.NOOP : stageRecorder;
+    }
+
+    public static StageRecorder recorder() {
+        return recorder;
+    }
+
+    /**
+     * 批次工具用的預設 recorder：classpath 上有 Micrometer 時建立 {@link MicrometerStageRecorder}，
+     * 否則 (例如精簡版命令列工具) 回傳 {@link StageRecorder#NOOP}
+     */
+    public static StageRecorder createDefault() {
+        try {
+            return (StageRecorder) Class.forName("io.github.yienruuuuu.MicrometerStageRecorder")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return StageRecorder.NOOP;
+        }
+    }
+
+    /**
+     * 開始量測一個階段，搭配 try-with-resources 使用
+     */
+    public static Span start(String stage) {
+        StageRecorder current = recorder;
+        return current.isEnabled() ? new Span(current, stage) : NOOP_SPAN;
+    }
+
+    public static void count(String name, long amount) {
+        recorder.count(name, amount);
+    }
+
+    public static void failure(String stage, Throwable cause) {
+        recorder.failure(stage, cause.getClass().getSimpleName());
+    }
+
+    public static void utilisation(long used, long capacity) {
+        if (capacity > 0) {
+            recorder.capacityUtilisation((double) used / capacity);
+        }
+    }
+
+    /**
+     * 一段進行中的量測，close 時把耗時與配置量交給 recorder
+     */
+    public static final class Span implements AutoCloseable {
+        private final StageRecorder recorder;
+        private final String stage;
+        private final long startNanos;
+        private final long startAllocated;
+
+        private Span(StageRecorder recorder, String stage) {
+            this.recorder = recorder;
+            this.stage = stage;
+            if (stage == null) {
+                this.startNanos = 0;
+                this.startAllocated = 0;
+            } else {
+                com.sun.management.ThreadMXBean threads = Allocation.THREADS;
+                this.startAllocated = threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+                this.startNanos = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (stage == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            long allocated = startAllocated < 0 ? -1 : Allocation.THREADS.getCurrentThreadAllocatedBytes() - startAllocated;
+            recorder.stage(stage, elapsed, allocated);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.yienruuuuu;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 接收隱碼 / 解碼各階段的耗時、記憶體配置量與計數。
+ * <p>
+ * 預設為什麼都不做的 {@link #NOOP}，由 {@link StageMetrics#install(StageRecorder)} 換成實際的實作
+ * (例如 {@link MicrometerStageRecorder})。實作必須是 thread-safe 的，批次工具會從多條執行緒同時回報。
+ *
+ * @author Eric.Lee
+ * Date: 2025/5/20
+ */
+public interface StageRecorder {
+    StageRecorder NOOP = new StageRecorder() {
+        @Override
+        public void stage(String stage, long elapsedNanos, long allocatedBytes) {
+        }
+
+        @Override
+        public void count(String name, long amount) {
+        }
+
+        @Override
+        public void failure(String stage, String cause) {
+        }
+
+        @Override
+        public void capacityUtilisation(double ratio) {
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * 一個階段結束
+     *
+     * @param allocatedBytes 這段期間目前執行緒配置的 bytes，JVM 不支援量測時為 -1
+     */
+    void stage(String stage, long elapsedNanos, long allocatedBytes);
+
+    void count(String name, long amount);
+
+    /**
+     * 某個階段失敗，cause 通常是例外的類別名稱
+     */
+    void failure(String stage, String cause);
+
+    /**
+     * 一次隱碼實際寫入的 bytes 佔圖片容量的比例 (0~1)
+     */
+    void capacityUtilisation(double ratio);
+
+    /**
+     * 為 false 時 {@link StageMetrics} 不會量測時間與配置量，完全沒有額外成本
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * 把目前累積的統計寫成 JSON 檔；不支援的實作什麼都不做
+     */
+    default void writeSummary(Path file) throws IOException {
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.yienruuuuu;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Bean;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 無介面的隱碼 HTTP 服務，給鑄造 (minting) 後端呼叫。
+ * <p>
+ * 一律以 {@code java.awt.headless=true} 執行，不依賴任何 Swing 元件，同一台機器可以跑多個實例。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/22
+ */
+@SpringBootApplication
+public class StegoApplication {
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        // 上傳的圖片直接在記憶體中串流解碼，不要讓 ImageIO 另外寫暫存檔
+        ImageIO.setUseCache(false);
+        new SpringApplicationBuilder(StegoApplication.class)
+                .headless(true)
+                .run(args);
+    }
+
+    /**
+     * 把各階段統計接到 Spring 的 MeterRegistry，由 actuator 的 /actuator/metrics 提供
+     */
+    @Bean
+    public MicrometerStageRecorder stageRecorder(MeterRegistry registry) {
+        MicrometerStageRecorder recorder = new MicrometerStageRecorder(registry);
+        StageMetrics.install(recorder);
+        return recorder;
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.yienruuuuu;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 工作池與等待佇列都已滿，請求端應稍後重試
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/22
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class StegoBusyException extends RuntimeException {
+    public StegoBusyException() {
+        super("隱碼服務忙碌中，請稍後再試");
+    }
+}
@@ -0,0 +1,531 @@
+package io.github.yienruuuuu;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 給 shell script 呼叫的輕量命令列入口。
+ * <p>
+ * 只用到 JDK 與本套件中不依賴 Spring / Micrometer / SikuliX / JNA 的類別，
+ * 由 {@code ./gradlew cliJar} 打包成沒有其他依賴的 {@code stego-cli.jar}，並附上 AppCDS 封存檔
+ * ({@code stego-cli.jsa}) 縮短 JVM 啟動時間。大量圖片時以 {@code --stdin} 模式逐行讀取指令，
+ * 整批只付一次啟動成本：
+ * <pre>
+ * encode&lt;TAB&gt;輸入&lt;TAB&gt;輸出&lt;TAB&gt;訊息
+ * extract&lt;TAB&gt;輸入
+ * invert&lt;TAB&gt;輸入&lt;TAB&gt;輸出[&lt;TAB&gt;負片輸出[&lt;TAB&gt;文字]]
+ * place&lt;TAB&gt;輸入&lt;TAB&gt;寬x高[&lt;TAB&gt;寬x高...]
+ * </pre>
+ * 每行指令對應 stdout 的一行 {@code OK<TAB>結果} 或 {@code ERR<TAB>原因}，取出的訊息中的
+ * {@code \}、TAB 與換行會跳脫成 {@code \\}、{@code \t}、{@code \n}。
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/3
+ */
+public final class StegoCli {
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "用法: stego <指令> [選項]",
+            "  encode <輸入圖片|-> <輸出 PNG|-> <訊息>     藏入訊息",
+            "  extract <輸入圖片|->                       取出訊息",
+            "  invert <輸入圖片> <輸出 PNG> [負片 PNG]     在偏白區域繪製淡色文字，可另外輸出負片",
+            "  place <輸入圖片> <寬x高>...                 每種大小列出互不重疊、白像素最多的位置 (x,y,白像素數)",
+            "  --stdin                                    從 stdin 逐行讀取指令 (TAB 分隔)，每行輸出一筆結果",
+            "  warmup                                     以記憶體中的小圖跑過所有指令 (產生 AppCDS 封存檔用)",
+            "選項:",
+            "  --bpc <1~4>  --alpha  --compress  --ecc  --key <密語>  (encode / extract)",
+            "  --text <文字>                                            (invert，預設「" + InvertSteganography.DEFAULT_MESSAGE + "」)",
+            "  --top <k>                                                (place，每種大小的位置數，預設 1)");
+
+    /**
+     * 成功、圖片中沒有隱藏訊息、參數或處理錯誤的結束碼
+     */
+    private static final int EXIT_OK = 0;
+    private static final int EXIT_NOT_FOUND = 1;
+    private static final int EXIT_ERROR = 2;
+    /**
+     * 整張解碼到 int[] 時的像素上限 (陣列長度上限)
+     */
+    private static final long MAX_DECODED_PIXELS = Integer.MAX_VALUE - 8;
+
+    private final LsbOptions options;
+    private final String key;
+    private final String text;
+    private final int top;
+
+    StegoCli(LsbOptions options, String key, String text) {
+        this(options, key, text, 1);
+    }
+
+    StegoCli(LsbOptions options, String key, String text, int top) {
+        if (top < 1) {
+            throw new IllegalArgumentException("--top 至少為 1");
+        }
+        this.options = options;
+        this.key = key;
+        this.text = text;
+        this.top = top;
+    }
+
+    public static void main(String[] args) {
+        // 訊息一律以 UTF-8 輸出 (與 manifest 相同)，不受執行環境的語系影響
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), false, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(new FileOutputStream(FileDescriptor.err), true, StandardCharsets.UTF_8);
+        int status = run(args, System.in, out, err);
+        out.flush();
+        System.exit(status);
+    }
+
+    static int run(String[] args, InputStream in, PrintStream out, PrintStream err) {
+        List<String> positional = new ArrayList<>();
+        StegoCli cli;
+        boolean stdin = false;
+        try {
+            LsbOptions options = LsbOptions.legacy();
+            String key = null;
+            String text = InvertSteganography.DEFAULT_MESSAGE;
+            int top = 1;
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--stdin":
+                        stdin = true;
+                        break;
+                    case "--bpc":
+                        options = options.withBitsPerChannel(Integer.parseInt(value(args, ++i)));
+                        break;
+                    case "--alpha":
+                        options = options.withAlpha(true);
+                        break;
+                    case "--compress":
+                        options = options.withCompression(true);
+                        break;
+                    case "--ecc":
+                        options = options.withErrorCorrection(true);
+                        break;
+                    case "--key":
+                        key = value(args, ++i);
+                        options = options.withKey(key);
+                        break;
+                    case "--text":
+                        text = value(args, ++i);
+                        break;
+                    case "--top":
+                        top = Integer.parseInt(value(args, ++i));
+                        break;
+                    default:
+                        positional.add(args[i]);
+                }
+            }
+            cli = new StegoCli(options, key, text, top);
+        } catch (IllegalArgumentException e) {
+            err.println("⚠️ " + e.getMessage());
+            return EXIT_ERROR;
+        }
+
+        try {
+            if (stdin) {
+                return cli.serve(in, out, err);
+            }
+            if (positional.isEmpty()) {
+                err.println(USAGE);
+                return EXIT_ERROR;
+            }
+            return cli.execute(positional, in, out, err);
+        } catch (IOException | RuntimeException e) {
+            // 損毀或惡意的圖片可能丟出任何 unchecked 例外，一律視為處理錯誤，不能落到代表「沒有訊息」的結束碼 1
+            err.println("⚠️ " + reason(e));
+            return EXIT_ERROR;
+        }
+    }
+
+    /**
+     * 例外沒有訊息時 (例如 EOFException) 改用類別名稱
+     */
+    static String reason(Throwable e) {
+        String message = e.getMessage();
+        return message == null || message.isEmpty() ? e.getClass().getSimpleName() : message;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(args[i - 1] + " 需要一個值");
+        }
+        return args[i];
+    }
+
+    private int execute(List<String> args, InputStream in, PrintStream out, PrintStream err) throws IOException {
+        String command = args.get(0);
+        switch (command) {
+            case "encode":
+                require(args, 4, 4);
+                encode(args.get(1), args.get(2), args.get(3), in, out);
+                return EXIT_OK;
+            case "extract":
+                require(args, 2, 2);
+                String message = extract(args.get(1), in);
+                if (message == null) {
+                    err.println("⚠️ 圖片中沒有隱藏訊息");
+                    return EXIT_NOT_FOUND;
+                }
+                out.println(message);
+                return EXIT_OK;
+            case "invert":
+                require(args, 3, 4);
+                out.println(invert(args.get(1), args.get(2), args.size() > 3 ? args.get(3) : null, text));
+                return EXIT_OK;
+            case "place":
+                require(args, 3, Integer.MAX_VALUE);
+                for (String line : place(args.get(1), args.subList(2, args.size()))) {
+                    out.println(line);
+                }
+                return EXIT_OK;
+            case "warmup":
+                warmup();
+                return EXIT_OK;
+            default:
+                throw new IllegalArgumentException("未知的指令：" + command + System.lineSeparator() + USAGE);
+        }
+    }
+
+    private static void require(List<String> args, int min, int max) {
+        if (args.size() < min || args.size() > max) {
+            throw new IllegalArgumentException(args.get(0) + " 的參數數量錯誤" + System.lineSeparator() + USAGE);
+        }
+    }
+
+    /**
+     * stdin 逐行處理指令，單筆失敗只回報 ERR，不中斷整批；全部成功才回傳 0
+     */
+    int serve(InputStream in, PrintStream out, PrintStream err) throws IOException {
+        int failed = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                out.println("OK\t" + serveLine(line));
+            } catch (Exception e) {
+                failed++;
+                out.println("ERR\t" + escape(reason(e)));
+            }
+            out.flush();
+        }
+        if (failed > 0) {
+            err.println("⚠️ " + failed + " 筆處理失敗");
+        }
+        return failed == 0 ? EXIT_OK : EXIT_ERROR;
+    }
+
+    private String serveLine(String line) throws IOException {
+        // 訊息放在最後一欄，本身可以含有 TAB
+        String[] fields = line.split("\t", line.startsWith("encode\t") ? 4 : -1);
+        switch (fields[0]) {
+            case "encode":
+                if (fields.length != 4) {
+                    throw new IllegalArgumentException("格式應為 encode<TAB>輸入<TAB>輸出<TAB>訊息");
+                }
+                encode(new File(fields[1]), new File(fields[2]), fields[3]);
+                return fields[2];
+            case "extract":
+                if (fields.length != 2) {
+                    throw new IllegalArgumentException("格式應為 extract<TAB>輸入");
+                }
+                String message = extract(new File(fields[1]));
+                if (message == null) {
+                    throw new IllegalArgumentException("圖片中沒有隱藏訊息");
+                }
+                return escape(message);
+            case "invert":
+                if (fields.length < 3 || fields.length > 5) {
+                    throw new IllegalArgumentException("格式應為 invert<TAB>輸入<TAB>輸出[<TAB>負片輸出[<TAB>文字]]");
+                }
+                String negative = fields.length > 3 && !fields[3].isEmpty() ? fields[3] : null;
+                return invert(fields[1], fields[2], negative, fields.length > 4 ? fields[4] : text);
+            case "place":
+                if (fields.length < 3) {
+                    throw new IllegalArgumentException("格式應為 place<TAB>輸入<TAB>寬x高[<TAB>寬x高...]");
+                }
+                return String.join("; ", place(fields[1], Arrays.asList(fields).subList(2, fields.length)));
+            default:
+                throw new IllegalArgumentException("未知的指令：" + fields[0]);
+        }
+    }
+
+    private void encode(String input, String output, String message, InputStream in, OutputStream out) throws IOException {
+        if (!"-".equals(input) && !"-".equals(output)) {
+            encode(new File(input), new File(output), message);
+            return;
+        }
+        BufferedImage image = "-".equals(input) ? read(in) : read(new File(input));
+        PixelRowSource stego = embed(image, message);
+        if ("-".equals(output)) {
+            OutputStream buffered = new BufferedOutputStream(out);
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.ENCODE)) {
+                PngEncoder.DEFAULT.encode(stego, Channels.newChannel(buffered));
+            }
+            buffered.flush();
+        } else {
+            write(stego, new File(output));
+        }
+    }
+
+    private void encode(File input, File output, String message) throws IOException {
+        write(embed(read(input), message), output);
+    }
+
+    /**
+     * 逐列藏入後直接交給 PNG encoder，不必像 {@link LsbTool#hideTextInImageLSB(BufferedImage, String, LsbOptions)}
+     * 先以 Graphics2D 複製成 ARGB (單次執行時光是初始化 Java2D 就要幾十毫秒)；沒有透明度的圖片輸出為 RGB PNG
+     */
+    private PixelRowSource embed(BufferedImage image, String message) {
+        return LsbRasterCodec.embed(PixelRowSource.of(image), message.getBytes(StandardCharsets.UTF_8), options);
+    }
+
+    private String extract(String input, InputStream in) throws IOException {
+        if (!"-".equals(input)) {
+            return extract(new File(input));
+        }
+        if (key != null) {
+            return LsbTool.extractTextFromImageLSB(read(in), key);
+        }
+        byte[] payload;
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in);
+             StageMetrics.Span span = StageMetrics.start(StageMetrics.EXTRACT)) {
+            payload = LsbStreamExtractor.extract(stream);
+        }
+        return payload == null ? null : new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private String extract(File input) throws IOException {
+        if (!input.isFile()) {
+            throw new IOException("找不到檔案：" + input);
+        }
+        return key != null
+                ? LsbTool.extractTextFromImageLSB(input, key)
+                : LsbTool.extractTextFromImageLSB(input);
+    }
+
+    /**
+     * 回傳輸出檔名與文字位置，例如 {@code out.png (120, 340) 36px}；沒有畫上文字時位置為 {@code -}
+     */
+    private String invert(String input, String output, String negativeOutput, String message) throws IOException {
+        InvertSteganography.Rendering rendering = InvertSteganography.render(read(new File(input)), message);
+        write(rendering.getImage(), new File(output));
+        if (negativeOutput != null) {
+            write(InvertSteganography.toNegative(rendering.getImage()), new File(negativeOutput));
+        }
+        if (!rendering.isDrawn()) {
+            return output + " -";
+        }
+        RegionPlacer.Placement region = rendering.getRegion();
+        return output + " (" + region.getX() + ", " + region.getY() + ") " + rendering.getFontSize() + "px";
+    }
+
+    /**
+     * 每種大小一行，例如 {@code 80x30 12,40,2310 200,8,2250}；整張圖只掃描一次，
+     * 位置互不重疊、依白像素數由多到少排列，放不下時該行只有大小
+     */
+    private List<String> place(String input, List<String> sizeArgs) throws IOException {
+        List<Dimension> sizes = new ArrayList<>(sizeArgs.size());
+        for (String arg : sizeArgs) {
+            sizes.add(size(arg));
+        }
+        Map<Dimension, List<RegionPlacer.Placement>> placements =
+                InvertSteganography.placeTexts(read(new File(input)), sizes, top);
+        List<String> lines = new ArrayList<>(sizeArgs.size());
+        for (int i = 0; i < sizes.size(); i++) {
+            StringBuilder line = new StringBuilder(sizeArgs.get(i));
+            for (RegionPlacer.Placement p : placements.get(sizes.get(i))) {
+                line.append(' ').append(p.getX()).append(',').append(p.getY()).append(',').append(p.getWhiteCount());
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private static Dimension size(String arg) {
+        int x = arg.indexOf('x');
+        try {
+            if (x > 0) {
+                int width = Integer.parseInt(arg.substring(0, x));
+                int height = Integer.parseInt(arg.substring(x + 1));
+                if (width > 0 && height > 0) {
+                    return new Dimension(width, height);
+                }
+            }
+        } catch (NumberFormatException ignored) {
+            // 與其他格式錯誤一樣回報
+        }
+        throw new IllegalArgumentException("區域大小應為 寬x高 (正整數)：" + arg);
+    }
+
+    /**
+     * 以記憶體中的小圖跑過 encode / extract / invert 的主要路徑，把會用到的類別都載入。
+     * build 時以 {@code -XX:ArchiveClassesAtExit} 執行這個指令產生 AppCDS 封存檔
+     */
+    static void warmup() throws IOException {
+        File dir = Files.createTempDirectory("stego-warmup").toFile();
+        try {
+            BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+            int[] pixels = new int[image.getWidth()];
+            for (int y = 0; y < image.getHeight(); y++) {
+                Arrays.fill(pixels, y < 120 ? 0xF0F0F0 : 0x203040 + y);
+                image.setRGB(0, y, pixels.length, 1, pixels, 0, pixels.length);
+            }
+            File source = new File(dir, "source.png");
+            write(image, source);
+
+            StegoCli legacy = new StegoCli(LsbOptions.legacy(), null, InvertSteganography.DEFAULT_MESSAGE);
+            StegoCli extended = new StegoCli(LsbOptions.legacy().withBitsPerChannel(2).withAlpha(true)
+                    .withCompression(true).withErrorCorrection(true), null, InvertSteganography.DEFAULT_MESSAGE);
+            StegoCli keyed = new StegoCli(LsbOptions.legacy().withKey("warmup"), "warmup", InvertSteganography.DEFAULT_MESSAGE);
+            for (StegoCli cli : new StegoCli[]{legacy, extended, keyed}) {
+                File target = new File(dir, "stego.png");
+                cli.encode(source, target, "warmup 訊息");
+                if (!"warmup 訊息".equals(cli.extract(target))) {
+                    throw new IOException("warmup 取出的訊息不一致");
+                }
+            }
+            legacy.invert(source.getPath(), new File(dir, "hidden.png").getPath(),
+                    new File(dir, "negative.png").getPath(), InvertSteganography.DEFAULT_MESSAGE);
+            new StegoCli(LsbOptions.legacy(), null, InvertSteganography.DEFAULT_MESSAGE, 3)
+                    .place(source.getPath(), List.of("80x30", "40x10"));
+            try {
+                legacy.serveLine("extract\t" + source.getPath());
+            } catch (IllegalArgumentException expected) {
+                // source.png 沒有隱藏訊息，serveLine 以例外回報
+            }
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    private static BufferedImage read(File file) throws IOException {
+        BufferedImage image;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file));
+             StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+            image = decode(in);
+        }
+        if (image == null) {
+            throw new IOException("無法讀取圖片：" + file);
+        }
+        return image;
+    }
+
+    private static BufferedImage read(InputStream in) throws IOException {
+        BufferedImage image;
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+            image = decode(new BufferedInputStream(in));
+        }
+        if (image == null) {
+            throw new IOException("無法從 stdin 讀取圖片");
+        }
+        return image;
+    }
+
+    /**
+     * 8-bit RGB / RGBA PNG 直接以 {@link PngScanlineReader} 解碼到 int raster。
+     * 第一次呼叫 ImageIO 要掃描整個 plugin registry，單次執行時比解碼本身還久，只有其他格式才交給 ImageIO
+     */
+    private static BufferedImage decode(InputStream in) throws IOException {
+        // 是 PNG 但檔頭不合法時直接回報，不再交給 ImageIO 重新解析一次
+        PngScanlineReader png = PngScanlineReader.openSupported(in);
+        if (png == null) {
+            return ImageIO.read(in);
+        }
+        try {
+            return decode(png);
+        } finally {
+            png.close();
+        }
+    }
+
+    private static BufferedImage decode(PngScanlineReader png) throws IOException {
+        int width = png.getWidth();
+        int height = png.getHeight();
+        if ((long) width * height > MAX_DECODED_PIXELS) {
+            throw new IOException("圖片太大，無法整張載入記憶體: " + width + "x" + height);
+        }
+        int[] pixels = new int[width * height];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            if (!png.readRow(row)) {
+                throw new IOException("PNG 影像資料不完整");
+            }
+            System.arraycopy(row, 0, pixels, y * width, width);
+        }
+        // 讀完第一列後才知道有沒有 tRNS，所以最後才決定圖片型態
+        BufferedImage image = new BufferedImage(width, height,
+                png.hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        image.getRaster().setDataElements(0, 0, width, height, pixels);
+        return image;
+    }
+
+    private static void write(PixelRowSource rows, File file) throws IOException {
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             StageMetrics.Span span = StageMetrics.start(StageMetrics.ENCODE)) {
+            PngEncoder.DEFAULT.encode(rows, out);
+        }
+    }
+
+    private static void write(BufferedImage image, File file) throws IOException {
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.ENCODE)) {
+            ImageEncoder.defaultEncoder().write(image, file.toPath());
+        }
+    }
+
+    static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.yienruuuuu;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 隱碼 / 解碼 REST API。
+ * <p>
+ * 請求本文直接是圖片的位元組 (不是 multipart)，由工作池中的執行緒一邊讀取一邊解碼，
+ * 結果也直接寫回 response 串流，整個過程不會先把上傳內容緩衝成 byte[]；
+ * 8-bit PNG 的 embed 連解碼後的整張圖都不會保留。圖片無法解碼時回 400。
+ *
+ * <pre>
+ * POST /api/stego/embed?message=...   body: 圖片   回應: image/png
+ * POST /api/stego/extract             body: 圖片   回應: {"message": "..."}
+ * </pre>
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/22
+ */
+@RestController
+@RequestMapping("/api/stego")
+public class StegoController {
+    /**
+     * 逐列串流輸出用的 encoder，來源只能依序讀取
+     */
+    private static final PngEncoder STREAMING_ENCODER = new PngEncoder(4, PngEncoder.Filter.ADAPTIVE, 1);
+
+    private final StegoWorkerPool workerPool;
+
+    public StegoController(StegoWorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    @PostMapping("/embed")
+    public void embed(@RequestParam("message") String message,
+                      HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        workerPool.execute(() -> {
+            InputStream in = new BufferedInputStream(request.getInputStream());
+            PngScanlineReader png;
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+                png = PngScanlineReader.openSupported(in);
+            }
+            if (png != null) {
+                try (png) {
+                    embed(png, message, response);
+                }
+                return null;
+            }
+
+            BufferedImage image;
+            try (StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+                image = ImageIO.read(in);
+            }
+            if (image == null) {
+                throw new IllegalArgumentException("無法讀取圖片");
+            }
+            BufferedImage stegoImage = LsbTool.hideTextInImageLSB(image, message);
+
+            response.setContentType(MediaType.IMAGE_PNG_VALUE);
+            try (OutputStream out = response.getOutputStream();
+                 StageMetrics.Span span = StageMetrics.start(StageMetrics.ENCODE)) {
+                ImageEncoder.defaultEncoder().write(stegoImage, out);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 8-bit RGB / RGBA PNG 一邊從請求解碼一邊藏入並壓縮寫回，只有放訊息的前幾列會留在記憶體中。
+     * 上傳串流只能依序讀取，所以改用單執行緒的 encoder (多個請求之間仍由工作池平行處理)；
+     * 開始輸出後才發現影像資料損毀時已無法改回錯誤狀態碼，連線會直接中斷
+     */
+    private static void embed(PngScanlineReader png, String message, HttpServletResponse response) throws IOException {
+        PixelRowSource rows;
+        try (StageMetrics.Span span = StageMetrics.start(StageMetrics.DECODE)) {
+            rows = png.sequentialRows();
+        }
+        PixelRowSource stego = LsbRasterCodec.embed(rows, message.getBytes(StandardCharsets.UTF_8), LsbOptions.legacy());
+
+        response.setContentType(MediaType.IMAGE_PNG_VALUE);
+        try (OutputStream out = response.getOutputStream();
+             StageMetrics.Span span = StageMetrics.start(StageMetrics.ENCODE)) {
+            STREAMING_ENCODER.encode(stego, Channels.newChannel(out));
+        }
+    }
+
+    @PostMapping("/extract")
+    public ResponseEntity<Map<String, String>> extract(HttpServletRequest request) throws IOException {
+        byte[] payload = workerPool.execute(() -> {
+            try (ImageInputStream in = ImageIO.createImageInputStream(request.getInputStream());
+                 StageMetrics.Span span = StageMetrics.start(StageMetrics.EXTRACT)) {
+                return LsbStreamExtractor.extract(in);
+            }
+        });
+        if (payload == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "圖片中沒有隱藏訊息"));
+        }
+        return ResponseEntity.ok(Map.of("message", new String(payload, StandardCharsets.UTF_8)));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    /**
+     * 上傳的圖片損毀、被截斷或格式不合法 (解碼器丟出的 IOException)
+     */
+    @ExceptionHandler(IOException.class)
+    public ResponseEntity<Map<String, String>> handleBadImage(IOException e) {
+        String reason = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        return ResponseEntity.badRequest().body(Map.of("error", "無法讀取圖片: " + reason));
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.yienruuuuu;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 隱碼運算用的固定大小工作池。
+ * <p>
+ * 同時處理的圖片數量上限為 threads + queueCapacity，超過時直接拒絕 (由 controller 回 429)，
+ * 不讓請求無限制地堆積在記憶體裡。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/22
+ */
+@Component
+public class StegoWorkerPool {
+    private final ThreadPoolExecutor executor;
+
+    public StegoWorkerPool(@Value("${stego.worker.threads:0}") int threads,
+                           @Value("${stego.worker.queue-capacity:16}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stego-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 交給工作池執行並等待結果；工作池已滿時丟出 {@link StegoBusyException}
+     */
+    public <T> T execute(Callable<T> task) throws IOException {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            StageMetrics.failure(StageMetrics.REQUEST, e);
+            throw new StegoBusyException();
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("隱碼工作被中斷", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            StageMetrics.failure(StageMetrics.REQUEST, cause);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
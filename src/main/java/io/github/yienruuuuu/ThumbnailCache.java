@@ -0,0 +1,131 @@
+package io.github.yienruuuuu;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 檔案預覽用的縮圖快取。
+ * <p>
+ * 解碼時以 {@link ImageReadParam#setSourceSubsampling} 每隔幾個像素取一個，
+ * 只配置接近縮圖大小的 raster，不必先把整張大圖解碼出來再縮小。
+ * 快取以檔案路徑 + 最後修改時間為 key，檔案被改寫後會自動重新產生。
+ *
+ * @author Eric.Lee
+ * Date: 2025/5/27
+ */
+final class ThumbnailCache {
+    private final Map<Key, BufferedImage> cache;
+
+    /**
+     * @param maxEntries 最多保留幾張縮圖，超過時淘汰最久沒用到的
+     */
+    ThumbnailCache(int maxEntries) {
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * 只查快取，沒有時回傳 null；可以在 EDT 上呼叫
+     */
+    BufferedImage getIfPresent(File file, int maxWidth, int maxHeight) {
+        return cache.get(new Key(file, maxWidth, maxHeight));
+    }
+
+    /**
+     * 取得等比例縮小到 maxWidth x maxHeight 以內的縮圖，不支援的格式回傳 null；會解碼圖片，不要在 EDT 上呼叫
+     */
+    BufferedImage get(File file, int maxWidth, int maxHeight) throws IOException {
+        Key key = new Key(file, maxWidth, maxHeight);
+        BufferedImage thumbnail = cache.get(key);
+        if (thumbnail == null) {
+            thumbnail = decode(file, maxWidth, maxHeight);
+            if (thumbnail != null) {
+                cache.put(key, thumbnail);
+            }
+        }
+        return thumbnail;
+    }
+
+    static BufferedImage decode(File file, int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                // 取樣間隔取整數並無條件捨去，解碼結果仍不小於縮圖，最後再平滑縮放一次
+                int step = Math.max(1, Math.max(width / maxWidth, height / maxHeight));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return scale(reader.read(0, param), maxWidth, maxHeight);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int maxWidth, int maxHeight) {
+        double ratio = Math.min(1.0, Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return thumbnail;
+    }
+
+    private static final class Key {
+        private final String path;
+        private final long lastModified;
+        private final int maxWidth;
+        private final int maxHeight;
+
+        Key(File file, int maxWidth, int maxHeight) {
+            this.path = file.getAbsolutePath();
+            this.lastModified = file.lastModified();
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return lastModified == k.lastModified && maxWidth == k.maxWidth && maxHeight == k.maxHeight
+                    && path.equals(k.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, maxWidth, maxHeight);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.yienruuuuu;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link PixelKernels} 的 SIMD 實作，一次處理一整條向量暫存器的像素。
+ * <p>
+ * 這個類別只會在 {@code jdk.incubator.vector} 模組存在時才被載入，不要從其他地方直接參照。
+ *
+ * @author Eric.Lee
+ * Date: 2025/5/6
+ */
+final class VectorPixelKernels implements PixelKernels.Backend {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    /**
+     * 與 INTS 同樣 lane 數的 byte 向量，用來把 0/1 結果寫回 mask
+     */
+    private static final VectorSpecies<Byte> BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, INTS.vectorBitSize() / 4)));
+    /**
+     * 128-bit 的 int 向量只有 4 lanes，對應的 byte 向量最小是 8 lanes，此時改用遮罩寫入前半段
+     */
+    private static final VectorMask<Byte> STORE_MASK = BYTES.indexInRange(0, INTS.length());
+    private static final boolean EXACT_STORE = BYTES.length() == INTS.length();
+
+    @Override
+    public void negate(int[] src, int srcPos, int[] dst, int dstPos, int length) {
+        int i = 0;
+        int upper = INTS.loopBound(length);
+        for (; i < upper; i += INTS.length()) {
+            IntVector.fromArray(INTS, src, srcPos + i)
+                    .lanewise(VectorOperators.NOT)
+                    .and(0x00FFFFFF)
+                    .intoArray(dst, dstPos + i);
+        }
+        for (; i < length; i++) {
+            dst[dstPos + i] = ~src[srcPos + i] & 0x00FFFFFF;
+        }
+    }
+
+    @Override
+    public int whiteMask(int[] argb, int srcPos, byte[] mask, int maskPos, int length, int limit) {
+        int count = 0;
+        int i = 0;
+        // lane 數超過 byte 向量能容納的數量時 (不常見的硬體組合) 直接走純量迴圈
+        int upper = BYTES.length() >= INTS.length() ? INTS.loopBound(length) : 0;
+        IntVector zero = IntVector.zero(INTS);
+        for (; i < upper; i += INTS.length()) {
+            IntVector p = IntVector.fromArray(INTS, argb, srcPos + i);
+            IntVector sum = p.lanewise(VectorOperators.LSHR, 16).and(0xFF)
+                    .add(p.lanewise(VectorOperators.LSHR, 8).and(0xFF))
+                    .add(p.and(0xFF));
+            VectorMask<Integer> white = sum.compare(VectorOperators.GT, limit);
+            count += white.trueCount();
+            ByteVector bytes = (ByteVector) zero.blend(1, white).castShape(BYTES, 0);
+            if (EXACT_STORE) {
+                bytes.intoArray(mask, maskPos + i);
+            } else {
+                bytes.intoArray(mask, maskPos + i, STORE_MASK);
+            }
+        }
+        for (; i < length; i++) {
+            int p = argb[srcPos + i];
+            int sum = ((p >> 16) & 0xFF) + ((p >> 8) & 0xFF) + (p & 0xFF);
+            int white = sum > limit ? 1 : 0;
+            mask[maskPos + i] = (byte) white;
+            count += white;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.yienruuuuu;
+
+import java.util.stream.IntStream;
+
+/**
+ * 找出圖片中「接近白色」像素最多的固定大小區域。
+ * <p>
+ * 取代原本 {@link InvertSteganography} 中 {@code int[width][height]} 的 whiteMap 與積分圖：
+ * 只保留 regionHeight 列的白色遮罩 (環狀緩衝) 以及每一行的白像素數，
+ * 以滑動視窗逐列往下掃，記憶體用量為 O(width × regionHeight)，與圖片高度無關。
+ * 可以依列切成多個 band 並行搜尋，合併時依 (y, x) 順序取第一個最大值，結果與單執行緒完全相同。
+ *
+ * @author Eric.Lee
+ * Date: 2025/4/15
+ */
+final class WhiteRegionFinder {
+    /**
+     * 每個 band 至少負責的列數，太小的話重疊列的重複讀取會比平行化的收益還大
+     */
+    private static final int MIN_ROWS_PER_BAND = 256;
+
+    private final int regionWidth;
+    private final int regionHeight;
+    private final int whiteThreshold;
+
+    WhiteRegionFinder(int regionWidth, int regionHeight, int whiteThreshold) {
+        if (regionWidth <= 0 || regionHeight <= 0) {
+            throw new IllegalArgumentException("區域寬高必須大於 0");
+        }
+        this.regionWidth = regionWidth;
+        this.regionHeight = regionHeight;
+        this.whiteThreshold = whiteThreshold;
+    }
+
+    /**
+     * 搜尋結果：區域左上角座標與其中的白像素數量
+     */
+    static final class Region {
+        private final int x;
+        private final int y;
+        private final int whiteCount;
+
+        Region(int x, int y, int whiteCount) {
+            this.x = x;
+            this.y = y;
+            this.whiteCount = whiteCount;
+        }
+
+        int getX() {
+            return x;
+        }
+
+        int getY() {
+            return y;
+        }
+
+        int getWhiteCount() {
+            return whiteCount;
+        }
+    }
+
+    Region find(PixelRowSource source) {
+        return find(source, 1);
+    }
+
+    /**
+     * 最多切成 parallelism 個 band 並行搜尋
+     */
+    Region find(PixelRowSource source, int parallelism) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (width < regionWidth || height < regionHeight) {
+            return new Region(0, 0, 0);
+        }
+
+        int positions = height - regionHeight + 1;
+        int bands = Math.max(1, Math.min(parallelism, positions / MIN_ROWS_PER_BAND));
+        if (bands == 1) {
+            return searchBand(source, 0, positions);
+        }
+
+        Region[] results = IntStream.range(0, bands)
+                .parallel()
+                .mapToObj(i -> searchBand(source,
+                        (int) ((long) positions * i / bands),
+                        (int) ((long) positions * (i + 1) / bands)))
+                .toArray(Region[]::new);
+
+        // 依 band 順序合併，只有嚴格更大才取代，與單執行緒由上往下掃的結果一致
+        Region best = results[0];
+        for (int i = 1; i < results.length; i++) {
+            if (results[i].whiteCount > best.whiteCount) {
+                best = results[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 搜尋區域左上角 y 落在 [fromY, toY) 的所有位置
+     */
+    private Region searchBand(PixelRowSource source, int fromY, int toY) {
+        int width = source.getWidth();
+        int[] row = new int[width];
+        byte[] window = new byte[regionHeight * width];
+        int[] columnSums = new int[width];
+
+        for (int y = fromY; y < fromY + regionHeight; y++) {
+            loadRow(source, y, row, window, columnSums);
+        }
+
+        int bestX = 0, bestY = fromY;
+        int maxWhiteArea = 0;
+        for (int y = fromY; y < toY; y++) {
+            // 水平方向滑動視窗，對 columnSums 做區間和
+            int sum = 0;
+            for (int x = 0; x < regionWidth; x++) {
+                sum += columnSums[x];
+            }
+            if (sum > maxWhiteArea) {
+                maxWhiteArea = sum;
+                bestX = 0;
+                bestY = y;
+            }
+            for (int x = 1; x <= width - regionWidth; x++) {
+                sum += columnSums[x + regionWidth - 1] - columnSums[x - 1];
+                if (sum > maxWhiteArea) {
+                    maxWhiteArea = sum;
+                    bestX = x;
+                    bestY = y;
+                }
+            }
+
+            // 視窗往下移一列：扣掉最上面一列，加入新的一列
+            if (y + 1 < toY) {
+                unloadRow(y, window, columnSums, width);
+                loadRow(source, y + regionHeight, row, window, columnSums);
+            }
+        }
+        return new Region(bestX, maxWhiteArea == 0 ? 0 : bestY, maxWhiteArea);
+    }
+
+    private void loadRow(PixelRowSource source, int y, int[] row, byte[] window, int[] columnSums) {
+        int width = row.length;
+        source.readRow(y, row);
+        int offset = (y % regionHeight) * width;
+        PixelKernels.whiteMask(row, 0, window, offset, width, whiteThreshold);
+        for (int x = 0; x < width; x++) {
+            columnSums[x] += window[offset + x];
+        }
+    }
+
+    private void unloadRow(int y, byte[] window, int[] columnSums, int width) {
+        int offset = (y % regionHeight) * width;
+        for (int x = 0; x < width; x++) {
+            columnSums[x] -= window[offset + x];
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link CapacityPlanner#plan} 判斷放得下的邊界必須與 {@link LsbRasterCodec#embed} 實際接受或拒絕的邊界一致
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class CapacityPlannerTest {
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+
+    private static final List<LsbOptions> MODES = List.of(
+            LsbOptions.legacy(),
+            LsbOptions.legacy().withBitsPerChannel(2).withAlpha(true),
+            LsbOptions.legacy().withErrorCorrection(true),
+            LsbOptions.legacy().withKey("密語"));
+
+    @Test
+    void planAgreesWithEmbedAroundCapacity() {
+        BufferedImage image = LsbRasterCodecTest.noise(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB, 1);
+        CapacityPlanner.ImageInfo info = new CapacityPlanner.ImageInfo("png", WIDTH, HEIGHT);
+        for (LsbOptions options : MODES) {
+            long capacity = LsbRasterCodec.payloadCapacity(WIDTH, HEIGHT, options);
+            assertTrue(capacity > 0, CapacityPlanner.describe(options));
+            for (long length = Math.max(1, capacity - 3); length <= capacity + 3; length++) {
+                byte[] payload = LsbRasterCodecTest.randomBytes((int) length, length);
+                assertSameVerdict(image, info, payload, options);
+            }
+        }
+    }
+
+    /**
+     * 壓縮模式以壓縮後的大小判斷，可壓縮的訊息即使原始長度超過容量也要放得下
+     */
+    @Test
+    void compressionCountsOnlyWhenItShrinks() {
+        BufferedImage image = LsbRasterCodecTest.noise(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB, 2);
+        CapacityPlanner.ImageInfo info = new CapacityPlanner.ImageInfo("png", WIDTH, HEIGHT);
+        LsbOptions options = LsbOptions.legacy().withCompression(true);
+        long capacity = LsbRasterCodec.payloadCapacity(WIDTH, HEIGHT, options);
+
+        for (long length = Math.max(1, capacity - 3); length <= capacity + 3; length++) {
+            assertSameVerdict(image, info, LsbRasterCodecTest.randomBytes((int) length, length), options);
+        }
+        for (int repeat = 1; repeat <= 200; repeat += 7) {
+            byte[] payload = "苦力怕".repeat(repeat).getBytes(StandardCharsets.UTF_8);
+            assertSameVerdict(image, info, payload, options);
+        }
+        byte[] compressible = "苦力怕".repeat(200).getBytes(StandardCharsets.UTF_8);
+        assertTrue(compressible.length > capacity);
+        assertTrue(CapacityPlanner.strict(options).plan(info, compressible).fits());
+    }
+
+    @Test
+    void forBaseRoutesToLargerModes() {
+        CapacityPlanner.ImageInfo info = new CapacityPlanner.ImageInfo("png", WIDTH, HEIGHT);
+        CapacityPlanner planner = CapacityPlanner.forBase(LsbOptions.legacy());
+        long baseCapacity = LsbRasterCodec.payloadCapacity(WIDTH, HEIGHT, LsbOptions.legacy());
+
+        CapacityPlanner.Plan small = planner.plan(info, LsbRasterCodecTest.randomBytes((int) baseCapacity, 3));
+        assertEquals(CapacityPlanner.Status.FITS, small.getStatus());
+
+        byte[] payload = LsbRasterCodecTest.randomBytes((int) baseCapacity * 3, 4);
+        CapacityPlanner.Plan routed = planner.plan(info, payload);
+        assertEquals(CapacityPlanner.Status.ROUTED, routed.getStatus());
+        assertTrue(routed.getRequired() <= routed.getCapacity());
+
+        // 選中的模式必須真的藏得進去並取得回來
+        BufferedImage image = LsbRasterCodecTest.noise(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB, 5);
+        assertArrayEquals(payload, LsbRasterCodec.extract(LsbRasterCodec.embed(image, payload, routed.getOptions())));
+    }
+
+    @Test
+    void tooLargeWhenNoModeFits() {
+        CapacityPlanner.ImageInfo info = new CapacityPlanner.ImageInfo("png", WIDTH, HEIGHT);
+        CapacityPlanner planner = CapacityPlanner.forBase(LsbOptions.legacy());
+        long maxCapacity = planner.getModes().stream()
+                .mapToLong(options -> LsbRasterCodec.payloadCapacity(WIDTH, HEIGHT, options))
+                .max().orElseThrow();
+
+        CapacityPlanner.Plan plan = planner.plan(info, LsbRasterCodecTest.randomBytes((int) maxCapacity + 1, 6));
+
+        assertEquals(CapacityPlanner.Status.TOO_LARGE, plan.getStatus());
+        assertFalse(plan.fits());
+        assertNull(plan.getOptions());
+        assertEquals(maxCapacity, plan.getCapacity());
+    }
+
+    @Test
+    void tinyImageCannotHoldTheHeader() {
+        CapacityPlanner.ImageInfo info = new CapacityPlanner.ImageInfo("png", 3, 3);
+        CapacityPlanner.Plan plan = CapacityPlanner.strict(LsbOptions.legacy()).plan(info, new byte[]{1});
+
+        assertEquals(CapacityPlanner.Status.TOO_LARGE, plan.getStatus());
+    }
+
+    private static void assertSameVerdict(BufferedImage image, CapacityPlanner.ImageInfo info,
+                                          byte[] payload, LsbOptions options) {
+        String label = CapacityPlanner.describe(options) + " length=" + payload.length;
+        boolean planned = CapacityPlanner.strict(options).plan(info, payload).fits();
+        boolean embedded;
+        try {
+            LsbRasterCodec.embed(image, payload, options);
+            embedded = true;
+        } catch (IllegalArgumentException e) {
+            embedded = false;
+        }
+        assertEquals(embedded, planned, label);
+    }
+}
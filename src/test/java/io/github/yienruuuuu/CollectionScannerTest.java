@@ -0,0 +1,219 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 資料夾與 zip 的掃描結果、索引檔的讀寫，以及重新掃描時沿用 / 重試的規則
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class CollectionScannerTest {
+    private static final String FIRST = "第一張的訊息";
+    private static final String SECOND = "第二張的訊息";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void indexRoundTrip() throws Exception {
+        Map<String, CollectionScanner.Entry> entries = new HashMap<>();
+        entries.put("a/1.png", new CollectionScanner.Entry("a/1.png", 123, 456_789L,
+                CollectionScanner.Status.FOUND, 5, sha256("hello")));
+        entries.put("2.png", new CollectionScanner.Entry("2.png", 7, -1, CollectionScanner.Status.NOT_FOUND, -1, null));
+        entries.put("壞檔.png", new CollectionScanner.Entry("壞檔.png", 0, 0, CollectionScanner.Status.ERROR, -1, null));
+        Path index = dir.resolve("scan.idx");
+
+        CollectionScanner.writeIndex(index, entries);
+        Map<String, CollectionScanner.Entry> read = CollectionScanner.readIndex(index);
+
+        assertEquals(entries.keySet(), read.keySet());
+        for (CollectionScanner.Entry expected : entries.values()) {
+            CollectionScanner.Entry actual = read.get(expected.getPath());
+            assertEquals(expected.getSize(), actual.getSize());
+            assertEquals(expected.getLastModified(), actual.getLastModified());
+            assertEquals(expected.getStatus(), actual.getStatus());
+            assertEquals(expected.getLength(), actual.getLength());
+            assertArrayEquals(expected.getSha256(), actual.getSha256());
+        }
+        assertEquals(Collections.emptyList(), listParts());
+    }
+
+    @Test
+    void scansDirectoryAgainstManifest() throws Exception {
+        Path images = createCollection();
+        Map<String, String> expected = Map.of("first.png", FIRST, "second.png", "預期不同的訊息");
+
+        CollectionScanner.Report report = scanner().scan(images, dir.resolve("scan.idx"), expected);
+
+        assertEquals(4, report.getScanned());
+        assertEquals(1, report.getCount(CollectionScanner.Status.FOUND));
+        assertEquals(1, report.getCount(CollectionScanner.Status.MISMATCH));
+        assertEquals(1, report.getCount(CollectionScanner.Status.NOT_FOUND));
+        assertEquals(1, report.getCount(CollectionScanner.Status.ERROR));
+
+        Map<String, CollectionScanner.Entry> index = CollectionScanner.readIndex(dir.resolve("scan.idx"));
+        CollectionScanner.Entry first = index.get("sub/first.png");
+        assertEquals(CollectionScanner.Status.FOUND, first.getStatus());
+        assertEquals(FIRST.getBytes(StandardCharsets.UTF_8).length, first.getLength());
+        assertArrayEquals(sha256(FIRST), first.getSha256());
+        assertEquals(CollectionScanner.Status.MISMATCH, index.get("second.png").getStatus());
+    }
+
+    /**
+     * 沒藏過訊息的黑圖解出長度 0 的訊息，要算成沒有訊息
+     */
+    @Test
+    void zeroLengthMessageIsNotFound() throws Exception {
+        Path images = createCollection();
+
+        scanner().scan(images, dir.resolve("scan.idx"), Collections.emptyMap());
+
+        CollectionScanner.Entry blank = CollectionScanner.readIndex(dir.resolve("scan.idx")).get("blank.png");
+        assertEquals(CollectionScanner.Status.NOT_FOUND, blank.getStatus());
+        assertEquals(-1, blank.getLength());
+        assertNull(blank.getSha256());
+    }
+
+    @Test
+    void rescanReusesUnchangedFilesAndRetriesErrors() throws Exception {
+        Path images = createCollection();
+        Path index = dir.resolve("scan.idx");
+        scanner().scan(images, index, Collections.emptyMap());
+
+        // 沒有變動：只有上次失敗的檔案重新檢查
+        CollectionScanner.Report again = scanner().scan(images, index, Map.of("first.png", "改過的預期訊息"));
+        assertEquals(1, again.getScanned());
+        assertEquals(3, again.getUnchanged());
+        assertEquals(1, again.getCount(CollectionScanner.Status.ERROR));
+        // 沿用的記錄仍依最新的 manifest 重新判斷
+        assertEquals(1, again.getCount(CollectionScanner.Status.MISMATCH));
+
+        // 修好壞檔、改寫其中一張：這兩張重新解碼
+        Path second = images.resolve("second.png");
+        writePng(LsbTool.hideTextInImageLSB(background(1), "新的訊息"), second);
+        Files.setLastModifiedTime(second, FileTime.fromMillis(Files.getLastModifiedTime(second).toMillis() + 5000));
+        writePng(LsbTool.hideTextInImageLSB(background(2), "修好了"), images.resolve("broken.png"));
+
+        CollectionScanner.Report fixed = scanner().scan(images, index, Collections.emptyMap());
+        assertEquals(2, fixed.getScanned());
+        assertEquals(2, fixed.getUnchanged());
+        assertEquals(0, fixed.getCount(CollectionScanner.Status.ERROR));
+        assertEquals(3, fixed.getCount(CollectionScanner.Status.FOUND));
+        assertArrayEquals(sha256("新的訊息"), CollectionScanner.readIndex(index).get("second.png").getSha256());
+    }
+
+    @Test
+    void scansZipEntries() throws Exception {
+        Path images = createCollection();
+        Path zip = dir.resolve("collection.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (String name : new String[]{"sub/first.png", "second.png", "blank.png", "broken.png", "notes.txt"}) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(Files.readAllBytes(images.resolve(name)));
+                out.closeEntry();
+            }
+        }
+
+        CollectionScanner.Report report = scanner().scan(zip, dir.resolve("zip.idx"), Collections.emptyMap());
+
+        assertEquals(4, report.getScanned());
+        assertEquals(2, report.getCount(CollectionScanner.Status.FOUND));
+        assertEquals(1, report.getCount(CollectionScanner.Status.NOT_FOUND));
+        assertEquals(1, report.getCount(CollectionScanner.Status.ERROR));
+        Map<String, CollectionScanner.Entry> index = CollectionScanner.readIndex(dir.resolve("zip.idx"));
+        assertArrayEquals(sha256(SECOND), index.get("second.png").getSha256());
+
+        // zip 沒有變動時全部沿用 (失敗的除外)
+        CollectionScanner.Report again = scanner().scan(zip, dir.resolve("zip.idx"), Collections.emptyMap());
+        assertEquals(3, again.getUnchanged());
+    }
+
+    /**
+     * 以密語藏入的圖片只有設定相同密語的 scanner 取得出來；有密語時上次沒找到訊息的圖片要重新檢查
+     */
+    @Test
+    void keyedImagesNeedTheKey() throws Exception {
+        Path images = Files.createDirectories(dir.resolve("keyed"));
+        BufferedImage keyed = LsbTool.hideTextInImageLSB(background(5), FIRST, LsbOptions.legacy().withKey("密語"));
+        writePng(keyed, images.resolve("keyed.png"));
+        writePng(LsbTool.hideTextInImageLSB(background(6), SECOND), images.resolve("plain.png"));
+        Path index = dir.resolve("keyed.idx");
+
+        CollectionScanner.Report withoutKey = scanner().scan(images, index, Collections.emptyMap());
+        assertEquals(1, withoutKey.getCount(CollectionScanner.Status.FOUND));
+        assertEquals(1, withoutKey.getCount(CollectionScanner.Status.NOT_FOUND));
+
+        CollectionScanner.Report withKey = new CollectionScanner(2, 2, 3, "密語").scan(images, index, Collections.emptyMap());
+        assertEquals(1, withKey.getScanned());
+        assertEquals(1, withKey.getUnchanged());
+        assertEquals(2, withKey.getCount(CollectionScanner.Status.FOUND));
+        assertArrayEquals(sha256(FIRST), CollectionScanner.readIndex(index).get("keyed.png").getSha256());
+
+        // 錯誤的密語取不出訊息
+        CollectionScanner.Report wrongKey = new CollectionScanner(2, 2, 3, "錯的")
+                .scan(images, dir.resolve("wrong.idx"), Collections.emptyMap());
+        assertEquals(1, wrongKey.getCount(CollectionScanner.Status.NOT_FOUND));
+    }
+
+    private static CollectionScanner scanner() {
+        return new CollectionScanner(2, 2, 3);
+    }
+
+    /**
+     * sub/first.png、second.png 有訊息，blank.png 是沒藏過訊息的黑圖，broken.png 不是圖片，notes.txt 不會被掃描
+     */
+    private Path createCollection() throws IOException {
+        Path images = Files.createDirectories(dir.resolve("images"));
+        Files.createDirectories(images.resolve("sub"));
+        writePng(LsbTool.hideTextInImageLSB(background(3), FIRST), images.resolve("sub/first.png"));
+        writePng(LsbTool.hideTextInImageLSB(background(4), SECOND), images.resolve("second.png"));
+        writePng(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), images.resolve("blank.png"));
+        Files.write(images.resolve("broken.png"), "這不是 PNG".getBytes(StandardCharsets.UTF_8));
+        Files.write(images.resolve("notes.txt"), "memo".getBytes(StandardCharsets.UTF_8));
+        return images;
+    }
+
+    static BufferedImage background(long seed) {
+        return LsbRasterCodecTest.noise(60, 40, BufferedImage.TYPE_INT_RGB, seed);
+    }
+
+    static void writePng(BufferedImage image, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            ImageIO.write(image, "png", out);
+        }
+    }
+
+    private List<Path> listParts() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".part")).collect(Collectors.toList());
+        }
+    }
+
+    static byte[] sha256(String message) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(message.getBytes(StandardCharsets.UTF_8));
+    }
+}
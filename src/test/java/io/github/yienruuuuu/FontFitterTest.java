@@ -0,0 +1,117 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 二分搜尋的結果要與原本從最大字型逐一往下試的寫法相同，以及量測結果的 LRU 快取
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class FontFitterTest {
+    private static final String[] MESSAGES = {"我是隱藏訊息", "Hidden Word", "iiiiiii", "W"};
+
+    @Test
+    void binarySearchMatchesLinearSearch() {
+        FontFitter fitter = new FontFitter(1024);
+        for (String message : MESSAGES) {
+            for (int style : new int[]{Font.PLAIN, Font.BOLD}) {
+                for (int[] region : new int[][]{{400, 100}, {200, 50}, {120, 80}, {37, 13}, {1000, 12}, {15, 300}, {3, 3}}) {
+                    FontFitter.Metrics actual = fitter.fit(Font.DIALOG, style, message, region[0], region[1], 10, 60);
+                    Integer expected = linearFit(Font.DIALOG, style, message, region[0], region[1], 10, 60);
+                    String label = message + " style=" + style + " " + region[0] + "x" + region[1];
+                    if (expected == null) {
+                        assertNull(actual, label);
+                    } else {
+                        assertEquals(expected.intValue(), actual.getFontSize(), label);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 量到的寬高與直接以同一字型量測相同，且真的放得進區域
+     */
+    @Test
+    void fittedMetricsMatchTheFont() {
+        FontFitter.Metrics m = new FontFitter(16).fit(Font.DIALOG, Font.BOLD, MESSAGES[0], 300, 60, 10, 60);
+
+        FontMetrics fm = metrics(new Font(Font.DIALOG, Font.BOLD, m.getFontSize()));
+        assertEquals(fm.stringWidth(MESSAGES[0]), m.getWidth());
+        assertEquals(fm.getHeight(), m.getHeight());
+        assertEquals(fm.getAscent(), m.getAscent());
+        assertEquals(m.getFontSize(), m.getFont().getSize());
+        assertTrue(m.getWidth() <= 300 && m.getHeight() <= 60, m.getWidth() + "x" + m.getHeight());
+    }
+
+    @Test
+    void repeatedMeasurementsComeFromTheCache() {
+        FontFitter fitter = new FontFitter(64);
+        FontFitter.Metrics first = fitter.measure(Font.DIALOG, Font.PLAIN, 24, "快取");
+
+        assertSame(first, fitter.measure(Font.DIALOG, Font.PLAIN, 24, "快取"));
+        // 任何一個欄位不同都是不同的 key
+        assertNotSame(first, fitter.measure(Font.DIALOG, Font.BOLD, 24, "快取"));
+        assertNotSame(first, fitter.measure(Font.DIALOG, Font.PLAIN, 25, "快取"));
+        assertNotSame(first, fitter.measure(Font.DIALOG, Font.PLAIN, 24, "快取2"));
+        assertNotSame(first, fitter.measure(Font.SERIF, Font.PLAIN, 24, "快取"));
+
+        // 同一段文字的第二張圖：fit 走過的每個大小都已量過，回傳同一個結果
+        FontFitter.Metrics fit = fitter.fit(Font.DIALOG, Font.PLAIN, "快取", 200, 40, 10, 60);
+        assertSame(fit, fitter.fit(Font.DIALOG, Font.PLAIN, "快取", 200, 40, 10, 60));
+        assertSame(fit, fitter.measure(Font.DIALOG, Font.PLAIN, fit.getFontSize(), "快取"));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedMeasurement() {
+        FontFitter fitter = new FontFitter(2);
+        FontFitter.Metrics a = fitter.measure(Font.DIALOG, Font.PLAIN, 10, "a");
+        FontFitter.Metrics b = fitter.measure(Font.DIALOG, Font.PLAIN, 10, "b");
+        // 讀取 a 之後 b 變成最久沒用到的那一筆
+        assertSame(a, fitter.measure(Font.DIALOG, Font.PLAIN, 10, "a"));
+
+        fitter.measure(Font.DIALOG, Font.PLAIN, 10, "c");
+
+        assertSame(a, fitter.measure(Font.DIALOG, Font.PLAIN, 10, "a"));
+        assertNotSame(b, fitter.measure(Font.DIALOG, Font.PLAIN, 10, "b"));
+    }
+
+    @Test
+    void rejectsEmptyCache() {
+        assertThrows(IllegalArgumentException.class, () -> new FontFitter(0));
+    }
+
+    /**
+     * 原本的寫法：從最大的字型開始逐一往下試，第一個放得進去的就是答案
+     */
+    private static Integer linearFit(String fontName, int style, String message,
+                                     int regionWidth, int regionHeight, int minSize, int maxSize) {
+        for (int size = maxSize; size >= minSize; size--) {
+            FontMetrics fm = metrics(new Font(fontName, style, size));
+            if (fm.stringWidth(message) <= regionWidth && fm.getHeight() <= regionHeight) {
+                return size;
+            }
+        }
+        return null;
+    }
+
+    private static FontMetrics metrics(Font font) {
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        try {
+            return g.getFontMetrics(font);
+        } finally {
+            g.dispose();
+        }
+    }
+}
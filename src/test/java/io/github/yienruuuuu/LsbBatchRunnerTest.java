@@ -0,0 +1,160 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 整批執行的寫出 / 略過 / 失敗統計、中斷後接續，以及 manifest 的檔名檢查
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class LsbBatchRunnerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesSkipsAndResumes() throws Exception {
+        Path in = Files.createDirectories(dir.resolve("in"));
+        Path out = dir.resolve("out");
+        writeImage(in.resolve("a.png"), "png", 1);
+        writeImage(in.resolve("b.bmp"), "bmp", 2);
+        writeImage(Files.createDirectories(in.resolve("sub")).resolve("c.png"), "png", 3);
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", in.resolve("tiny.png").toFile());
+        Path manifest = dir.resolve("manifest.tsv");
+        Files.write(manifest, List.of(
+                "# 檔名\t訊息",
+                "a.png\t第一張",
+                "",
+                "b.bmp\t第二張\t含有 TAB",
+                "sub/c.png\t子資料夾",
+                "missing.png\t找不到檔案",
+                "tiny.png\t這段訊息放不進 4x4 的圖"), StandardCharsets.UTF_8);
+        List<LsbBatchRunner.Job> jobs = LsbBatchRunner.readManifest(manifest);
+        assertEquals(5, jobs.size());
+
+        LsbBatchRunner.Report first = new LsbBatchRunner(in, out, 3, 2).run(jobs);
+        assertReport(3, 0, 2, first);
+        assertTrue(first.getImagesPerSecond() > 0);
+        assertEquals("第一張", message(out.resolve("a.png")));
+        assertEquals("第二張\t含有 TAB", message(out.resolve("b.png")));
+        assertEquals("子資料夾", message(out.resolve("sub/c.png")));
+
+        // 已寫出的全部略過，失敗的重試後仍失敗
+        assertReport(0, 3, 2, new LsbBatchRunner(in, out, 3, 2).run(jobs));
+
+        // 模擬中斷：輸出不見了，只留下寫到一半的暫存檔
+        Files.delete(out.resolve("b.png"));
+        Files.write(out.resolve("b.png.part"), new byte[]{1, 2, 3});
+        assertReport(1, 2, 2, new LsbBatchRunner(in, out, 3, 2).run(jobs));
+        assertEquals("第二張\t含有 TAB", message(out.resolve("b.png")));
+        assertEquals(List.of(), partFiles(out));
+    }
+
+    /**
+     * 同時處理中的圖片數量不超過 maxInFlight，即使執行緒比較多
+     */
+    @Test
+    void boundsImagesInFlight() throws Exception {
+        Path in = Files.createDirectories(dir.resolve("in"));
+        List<LsbBatchRunner.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            writeImage(in.resolve(i + ".png"), "png", i);
+            jobs.add(new LsbBatchRunner.Job(i + ".png", "訊息 " + i));
+        }
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ImageEncoder slow = new ImageEncoder() {
+            @Override
+            public void write(BufferedImage image, WritableByteChannel out) throws IOException {
+                peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                    ImageEncoder.defaultEncoder().write(image, out);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } finally {
+                    current.decrementAndGet();
+                }
+            }
+        };
+
+        LsbBatchRunner.Report report = new LsbBatchRunner(in, dir.resolve("out"), 6, 2, slow).run(jobs);
+
+        assertReport(12, 0, 0, report);
+        assertTrue(peak.get() <= 2, "同時處理 " + peak.get() + " 張");
+    }
+
+    /**
+     * a.jpg 與 a.png 都會輸出成 a.png，同時執行會互相覆蓋
+     */
+    @Test
+    void rejectsJobsWritingTheSameOutput() throws Exception {
+        Path manifest = dir.resolve("manifest.tsv");
+        Files.write(manifest, List.of("a.jpg\t一", "b.png\t二", "a.png\t三"), StandardCharsets.UTF_8);
+
+        IOException e = assertThrows(IOException.class, () -> LsbBatchRunner.readManifest(manifest));
+        assertTrue(e.getMessage().contains("第 3 行"), e.getMessage());
+
+        Path out = dir.resolve("out");
+        List<LsbBatchRunner.Job> jobs = List.of(new LsbBatchRunner.Job("x/a.jpg", "一"),
+                new LsbBatchRunner.Job("x/./a.png", "二"));
+        assertThrows(IllegalArgumentException.class, () -> new LsbBatchRunner(dir, out, 1, 1).run(jobs));
+        assertFalse(Files.exists(out));
+    }
+
+    @Test
+    void rejectsPathsOutsideTheDirectories() throws Exception {
+        for (String name : new String[]{"../escape.png", "sub/../../escape.png", dir.resolve("abs.png").toString(), "."}) {
+            Path manifest = dir.resolve("manifest.tsv");
+            Files.write(manifest, List.of("ok.png\t一", name + "\t二"), StandardCharsets.UTF_8);
+            assertThrows(IOException.class, () -> LsbBatchRunner.readManifest(manifest), name);
+
+            List<LsbBatchRunner.Job> jobs = List.of(new LsbBatchRunner.Job(name, "二"));
+            Path out = dir.resolve("out");
+            assertThrows(IllegalArgumentException.class, () -> new LsbBatchRunner(dir, out, 1, 1).run(jobs), name);
+        }
+        assertFalse(Files.exists(dir.getParent().resolve("escape.png")));
+        assertEquals("sub/a.png", LsbBatchRunner.relativePath("sub/x/../a.png").toString());
+    }
+
+    private static void assertReport(int written, int skipped, int failed, LsbBatchRunner.Report report) {
+        assertEquals(written, report.getWritten(), report.toString());
+        assertEquals(skipped, report.getSkipped(), report.toString());
+        assertEquals(failed, report.getFailed(), report.toString());
+    }
+
+    private static String message(Path file) throws IOException {
+        return LsbTool.extractTextFromImageLSB(ImageIO.read(file.toFile()));
+    }
+
+    private static void writeImage(Path file, String format, long seed) throws IOException {
+        BufferedImage image = LsbRasterCodecTest.noise(50, 40, BufferedImage.TYPE_INT_RGB, seed);
+        assertTrue(ImageIO.write(image, format, file.toFile()), format);
+    }
+
+    private static List<Path> partFiles(Path out) throws IOException {
+        try (Stream<Path> files = Files.walk(out)) {
+            return files.filter(p -> p.toString().endsWith(".part")).collect(Collectors.toList());
+        }
+    }
+}
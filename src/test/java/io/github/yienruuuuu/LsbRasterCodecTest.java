@@ -0,0 +1,306 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 各種模式藏入 / 取出的往返測試，以及舊版 (逐像素 getRGB / setRGB) 產生的圖片仍能解碼
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class LsbRasterCodecTest {
+    private static final String MESSAGE = "我是隱藏訊息，苦力怕炸你家 🎉";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void legacyRoundTrip() {
+        BufferedImage image = noise(120, 80, BufferedImage.TYPE_INT_RGB, 1);
+        byte[] payload = MESSAGE.getBytes(StandardCharsets.UTF_8);
+
+        BufferedImage stego = LsbRasterCodec.embed(image, payload);
+
+        assertArrayEquals(payload, LsbRasterCodec.extract(stego));
+        assertEquals(MESSAGE, LsbTool.extractTextFromImageLSB(stego));
+    }
+
+    @Test
+    void legacyRoundTripThroughPngFile() throws IOException {
+        BufferedImage image = noise(300, 200, BufferedImage.TYPE_3BYTE_BGR, 2);
+        Path file = dir.resolve("stego.png");
+        ImageEncoder.defaultEncoder().write(LsbTool.hideTextInImageLSB(image, MESSAGE), file);
+
+        assertEquals(MESSAGE, LsbTool.extractTextFromImageLSB(file.toFile()));
+    }
+
+    /**
+     * 舊版格式：4 bytes 長度 + 訊息，逐像素依 R、G、B 的順序各藏 1 bit
+     */
+    @Test
+    void decodesImagesWrittenByTheOriginalPixelLoop() throws IOException {
+        BufferedImage image = noise(64, 48, BufferedImage.TYPE_INT_ARGB, 3);
+        byte[] payload = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        BufferedImage legacy = embedLikeOriginal(image, payload);
+
+        assertArrayEquals(payload, LsbRasterCodec.extract(legacy));
+
+        Path file = dir.resolve("legacy.png");
+        ImageIO.write(legacy, "png", file.toFile());
+        assertArrayEquals(payload, LsbStreamExtractor.extract(file));
+        assertEquals(MESSAGE, LsbTool.extractTextFromImageLSB(ImageIO.read(file.toFile())));
+    }
+
+    @Test
+    void rejectsPayloadLargerThanCapacity() {
+        BufferedImage image = noise(20, 20, BufferedImage.TYPE_INT_RGB, 4);
+        long capacity = LsbRasterCodec.payloadCapacity(20, 20, LsbOptions.legacy());
+
+        LsbRasterCodec.embed(image, new byte[(int) capacity]);
+        assertThrows(IllegalArgumentException.class, () -> LsbRasterCodec.embed(image, new byte[(int) capacity + 1]));
+    }
+
+    @Test
+    void returnsNullWhenLengthPrefixIsImpossible() {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        // 長度前綴的每個 bit 都是 1，遠大於圖片容量
+        for (int x = 0; x < 10; x++) {
+            image.setRGB(x, 0, 0xFFFFFF);
+            image.setRGB(x, 1, 0xFFFFFF);
+        }
+
+        assertNull(LsbRasterCodec.extract(image));
+    }
+
+    @Test
+    void extendedModesRoundTrip() throws IOException {
+        BufferedImage image = noise(90, 70, BufferedImage.TYPE_INT_ARGB, 5);
+        byte[] payload = randomBytes(2000, 6);
+        for (int bits = 1; bits <= 4; bits++) {
+            for (boolean alpha : new boolean[]{false, true}) {
+                LsbOptions options = LsbOptions.legacy().withBitsPerChannel(bits).withAlpha(alpha);
+                String label = "bpc=" + bits + ", alpha=" + alpha;
+                byte[] message = Arrays.copyOf(payload,
+                        (int) Math.min(payload.length, LsbRasterCodec.payloadCapacity(90, 70, options)));
+
+                BufferedImage stego = LsbRasterCodec.embed(image, message, options);
+                assertArrayEquals(message, LsbRasterCodec.extract(stego), label);
+
+                // 逐列解碼的路徑也要讀得出模式
+                Path file = dir.resolve("extended-" + bits + "-" + alpha + ".png");
+                ImageEncoder.defaultEncoder().write(stego, file);
+                assertArrayEquals(message, LsbStreamExtractor.extract(file), label);
+            }
+        }
+    }
+
+    @Test
+    void extendedCapacityIsExact() {
+        BufferedImage image = noise(40, 30, BufferedImage.TYPE_INT_ARGB, 7);
+        LsbOptions options = LsbOptions.legacy().withBitsPerChannel(2).withAlpha(true);
+        int capacity = (int) LsbRasterCodec.payloadCapacity(40, 30, options);
+
+        assertArrayEquals(new byte[capacity], LsbRasterCodec.extract(LsbRasterCodec.embed(image, new byte[capacity], options)));
+        assertThrows(IllegalArgumentException.class, () -> LsbRasterCodec.embed(image, new byte[capacity + 1], options));
+    }
+
+    @Test
+    void embeddingFromRowSourceMatchesBufferedImage() {
+        BufferedImage image = noise(50, 40, BufferedImage.TYPE_INT_RGB, 8);
+        byte[] payload = randomBytes(300, 9);
+        LsbOptions options = LsbOptions.legacy().withBitsPerChannel(3);
+
+        BufferedImage expected = LsbRasterCodec.embed(image, payload, options);
+        PixelRowSource rows = LsbRasterCodec.embed(PixelRowSource.of(image), payload, options);
+
+        int[] expectedRow = new int[50];
+        int[] row = new int[50];
+        for (int y = 0; y < 40; y++) {
+            expected.getRGB(0, y, 50, 1, expectedRow, 0, 50);
+            rows.readRow(y, row);
+            assertArrayEquals(expectedRow, row, "y=" + y);
+        }
+        assertArrayEquals(payload, LsbRasterCodec.extract(rows));
+    }
+
+    @Test
+    void compressedPayloadLargerThanRawCapacityRoundTrips() {
+        BufferedImage image = noise(60, 40, BufferedImage.TYPE_INT_RGB, 10);
+        LsbOptions options = LsbOptions.legacy().withCompression(true);
+        long rawCapacity = LsbRasterCodec.payloadCapacity(60, 40, LsbOptions.legacy());
+        byte[] payload = MESSAGE.repeat(40).getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IllegalArgumentException.class, () -> LsbRasterCodec.embed(image, payload));
+        assertArrayEquals(payload, LsbRasterCodec.extract(LsbRasterCodec.embed(image, payload, options)),
+                "raw capacity " + rawCapacity + ", payload " + payload.length);
+    }
+
+    /**
+     * 壓縮後沒有變小的資料改存原始內容，所以剛好塞滿容量的亂數資料仍然放得下
+     */
+    @Test
+    void incompressiblePayloadRoundTripsWithCompressionEnabled() {
+        BufferedImage image = noise(80, 60, BufferedImage.TYPE_INT_ARGB, 11);
+        LsbOptions options = LsbOptions.legacy().withBitsPerChannel(2).withAlpha(true).withCompression(true);
+        byte[] payload = randomBytes((int) LsbRasterCodec.payloadCapacity(80, 60, options), 12);
+
+        assertArrayEquals(payload, LsbRasterCodec.extract(LsbRasterCodec.embed(image, payload, options)));
+    }
+
+    @Test
+    void keyedRoundTripNeedsTheSameKey() {
+        BufferedImage image = noise(100, 77, BufferedImage.TYPE_INT_RGB, 13);
+        byte[] payload = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        LsbOptions options = LsbOptions.legacy().withKey("密語");
+
+        BufferedImage stego = LsbRasterCodec.embed(image, payload, options);
+
+        assertArrayEquals(payload, LsbRasterCodec.extract(stego, LsbOptions.deriveKey("密語")));
+        assertFalse(Arrays.equals(payload, LsbRasterCodec.extract(stego)), "沒有密語不應取得訊息");
+        assertFalse(Arrays.equals(payload, LsbRasterCodec.extract(stego, LsbOptions.deriveKey("錯的密語"))),
+                "錯誤的密語不應取得訊息");
+    }
+
+    @Test
+    void keyedEmbeddingFromRowSourceMatchesBufferedImage() {
+        BufferedImage image = noise(64, 50, BufferedImage.TYPE_INT_ARGB, 14);
+        byte[] payload = randomBytes(500, 15);
+        LsbOptions options = LsbOptions.legacy().withBitsPerChannel(2).withAlpha(true).withKey("k");
+
+        BufferedImage expected = LsbRasterCodec.embed(image, payload, options);
+        PixelRowSource rows = LsbRasterCodec.embed(PixelRowSource.of(image), payload, options);
+
+        int[] expectedRow = new int[64];
+        int[] row = new int[64];
+        for (int y = 0; y < 50; y++) {
+            expected.getRGB(0, y, 64, 1, expectedRow, 0, 64);
+            rows.readRow(y, row);
+            assertArrayEquals(expectedRow, row, "y=" + y);
+        }
+    }
+
+    /**
+     * 以密語從檔案取出時預設不留下解碼快取，只有指定快取資料夾時才寫入
+     */
+    @Test
+    void keyedExtractionFromFileUsesCacheOnlyWhenAsked() throws IOException {
+        BufferedImage image = noise(120, 90, BufferedImage.TYPE_INT_RGB, 16);
+        Path file = dir.resolve("keyed.png");
+        ImageEncoder.defaultEncoder().write(LsbTool.hideTextInImageLSB(image, MESSAGE, LsbOptions.legacy().withKey("密語")), file);
+
+        long cachedBefore = countFiles(MappedPixelImage.defaultCacheDir());
+        assertEquals(MESSAGE, LsbTool.extractTextFromImageLSB(file.toFile(), "密語"));
+        assertEquals(cachedBefore, countFiles(MappedPixelImage.defaultCacheDir()));
+
+        Path cache = dir.resolve("cache");
+        assertEquals(MESSAGE, LsbTool.extractTextFromImageLSB(file.toFile(), "密語", cache));
+        assertEquals(1, countFiles(cache));
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    /**
+     * ECC 模式下改壞一份長度前綴與訊息中的少量像素 (例如有損的後製)，仍然要取得出完整訊息
+     */
+    @Test
+    void errorCorrectionSurvivesFlippedBits() {
+        BufferedImage image = noise(100, 60, BufferedImage.TYPE_INT_RGB, 17);
+        byte[] payload = MESSAGE.repeat(10).getBytes(StandardCharsets.UTF_8);
+        int[] damaged = {1, 5, 40, 97, 160, 333, 512, 800, 1100, 1500};
+
+        BufferedImage stego = LsbRasterCodec.embed(image, payload, LsbOptions.legacy().withErrorCorrection(true));
+        flipRedLsb(stego, damaged);
+        assertArrayEquals(payload, LsbRasterCodec.extract(stego));
+
+        // 同樣的損壞在沒有 ECC 時會讓內容出錯
+        BufferedImage plain = LsbRasterCodec.embed(image, payload, LsbOptions.legacy().withBitsPerChannel(1));
+        flipRedLsb(plain, new int[]{40, 97});
+        assertFalse(Arrays.equals(payload, LsbRasterCodec.extract(plain)));
+    }
+
+    @Test
+    void errorCorrectionCombinesWithOtherModes() {
+        BufferedImage image = noise(120, 90, BufferedImage.TYPE_INT_ARGB, 18);
+        byte[] payload = MESSAGE.repeat(20).getBytes(StandardCharsets.UTF_8);
+        LsbOptions options = LsbOptions.legacy().withBitsPerChannel(2).withAlpha(true)
+                .withCompression(true).withErrorCorrection(true).withKey("密語");
+
+        BufferedImage stego = LsbRasterCodec.embed(image, payload, options);
+
+        assertArrayEquals(payload, LsbRasterCodec.extract(stego, LsbOptions.deriveKey("密語")));
+    }
+
+    private static void flipRedLsb(BufferedImage image, int[] pixels) {
+        for (int pixel : pixels) {
+            int x = pixel % image.getWidth();
+            int y = pixel / image.getWidth();
+            image.setRGB(x, y, image.getRGB(x, y) ^ 0x10000);
+        }
+    }
+
+    static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    static BufferedImage noise(int width, int height, int type, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 與原本 LsbTool.hideTextInImageLSB 相同的寫法，用來產生舊版圖片
+     */
+    private static BufferedImage embedLikeOriginal(BufferedImage image, byte[] payload) {
+        byte[] data = ByteBuffer.allocate(payload.length + 4).putInt(payload.length).put(payload).array();
+        int totalBits = data.length * 8;
+        BufferedImage stego = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int bitIndex = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int argb = image.getRGB(x, y);
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    if (bitIndex < totalBits) {
+                        int bit = (data[bitIndex / 8] >> (7 - bitIndex % 8)) & 1;
+                        argb = (argb & ~(1 << shift)) | (bit << shift);
+                        bitIndex++;
+                    }
+                }
+                stego.setRGB(x, y, argb);
+            }
+        }
+        return stego;
+    }
+}
@@ -0,0 +1,252 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 映射區段的邊界、快取的重用與失效，以及超過大小上限時的淘汰順序
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class MappedPixelImageTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 真正的區段是 2 GB，這裡以幾列大小的區段驗證同樣的換算；區段大小不影響檔案格式
+     */
+    @Test
+    void pixelAccessAcrossSegmentBoundaries() throws IOException {
+        int width = 37;
+        int height = 11;
+        Path file = dir.resolve("segments.pix");
+        // 每段 3 列又多幾個 byte，最後一段只有 2 列
+        try (MappedPixelImage image = MappedPixelImage.create(file, width, height, true, width * 4L * 3 + 5)) {
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    row[x] = pixel(x, y);
+                }
+                image.writeRow(y, row);
+            }
+        }
+
+        for (long segmentBytes : new long[]{1, width * 4L * 3 + 5, width * 4L * 4, Integer.MAX_VALUE}) {
+            try (MappedPixelImage image = MappedPixelImage.open(file, segmentBytes)) {
+                assertEquals(width, image.getWidth());
+                assertEquals(height, image.getHeight());
+                assertTrue(image.hasAlpha());
+                int[] row = new int[width];
+                for (int y = 0; y < height; y++) {
+                    image.readRow(y, row);
+                    for (int x = 0; x < width; x++) {
+                        String at = "segment=" + segmentBytes + " (" + x + ", " + y + ")";
+                        assertEquals(pixel(x, y), row[x], at);
+                        assertEquals(pixel(x, y), image.getPixel(y * width + x), at);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void decodesLikeImageIo() throws IOException {
+        BufferedImage argb = LsbRasterCodecTest.noise(45, 31, BufferedImage.TYPE_INT_ARGB, 1);
+        BufferedImage rgb = LsbRasterCodecTest.noise(45, 31, BufferedImage.TYPE_INT_RGB, 2);
+        for (BufferedImage source : new BufferedImage[]{argb, rgb}) {
+            Path png = writePng(source, "source-" + source.getType() + ".png");
+            try (MappedPixelImage image = MappedPixelImage.decode(png, dir.resolve("decoded.pix"))) {
+                assertSamePixels(ImageIO.read(png.toFile()), image);
+            }
+        }
+    }
+
+    @Test
+    void loadReusesTheCachedFile() throws IOException {
+        Path cache = dir.resolve("cache");
+        Path source = writePng(LsbRasterCodecTest.noise(20, 10, BufferedImage.TYPE_INT_RGB, 3), "a.png");
+        try (MappedPixelImage image = MappedPixelImage.load(source, cache, Long.MAX_VALUE)) {
+            assertSamePixels(ImageIO.read(source.toFile()), image);
+        }
+        List<Path> cached = cacheFiles(cache);
+        assertEquals(1, cached.size());
+
+        // 改掉快取檔中的一個像素：重用快取時會讀到改過的值，代表沒有重新解碼
+        overwritePixel(cached.get(0), 0, 0x12345678);
+        Files.setLastModifiedTime(cached.get(0), FileTime.fromMillis(System.currentTimeMillis() - HOUR));
+        try (MappedPixelImage image = MappedPixelImage.load(source, cache, Long.MAX_VALUE)) {
+            assertEquals(0x12345678, image.getPixel(0));
+        }
+        assertEquals(cached, cacheFiles(cache));
+        // 命中時更新修改時間，作為 LRU 的最後使用時間
+        assertTrue(Files.getLastModifiedTime(cached.get(0)).toMillis() > System.currentTimeMillis() - HOUR / 2);
+    }
+
+    @Test
+    void changedSourceOrCorruptCacheIsDecodedAgain() throws IOException {
+        Path cache = dir.resolve("cache");
+        Path source = writePng(LsbRasterCodecTest.noise(20, 10, BufferedImage.TYPE_INT_RGB, 4), "a.png");
+        MappedPixelImage.load(source, cache, Long.MAX_VALUE).close();
+        Path first = cacheFiles(cache).get(0);
+
+        // 快取檔損毀：刪掉重新解碼
+        Files.write(first, new byte[]{1, 2, 3});
+        try (MappedPixelImage image = MappedPixelImage.load(source, cache, Long.MAX_VALUE)) {
+            assertSamePixels(ImageIO.read(source.toFile()), image);
+        }
+
+        // 來源改變 (修改時間不同) 時以新的 key 重新解碼
+        writePng(LsbRasterCodecTest.noise(20, 10, BufferedImage.TYPE_INT_RGB, 5), "a.png");
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+        try (MappedPixelImage image = MappedPixelImage.load(source, cache, Long.MAX_VALUE)) {
+            assertSamePixels(ImageIO.read(source.toFile()), image);
+        }
+        assertEquals(2, cacheFiles(cache).size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondTheLimit() throws IOException {
+        Path cache = dir.resolve("cache");
+        Path a = writePng(LsbRasterCodecTest.noise(20, 10, BufferedImage.TYPE_INT_RGB, 6), "a.png");
+        Path b = writePng(LsbRasterCodecTest.noise(20, 10, BufferedImage.TYPE_INT_RGB, 7), "b.png");
+        Path c = writePng(LsbRasterCodecTest.noise(20, 10, BufferedImage.TYPE_INT_RGB, 8), "c.png");
+        MappedPixelImage.load(a, cache, Long.MAX_VALUE).close();
+        Path cachedA = cacheFiles(cache).get(0);
+        MappedPixelImage.load(b, cache, Long.MAX_VALUE).close();
+        Path cachedB = cacheFiles(cache).stream().filter(p -> !p.equals(cachedA)).findFirst().orElseThrow();
+        long fileSize = Files.size(cachedA);
+
+        // b 比 a 更久沒用到
+        Files.setLastModifiedTime(cachedA, FileTime.fromMillis(System.currentTimeMillis() - HOUR));
+        Files.setLastModifiedTime(cachedB, FileTime.fromMillis(System.currentTimeMillis() - 2 * HOUR));
+
+        // 上限只放得下兩個：加入 c 時淘汰 b
+        MappedPixelImage.load(c, cache, 2 * fileSize).close();
+        List<Path> remaining = cacheFiles(cache);
+        assertEquals(2, remaining.size());
+        assertTrue(remaining.contains(cachedA));
+        assertFalse(remaining.contains(cachedB));
+
+        // 上限比一個檔案還小時，剛解碼的那一個仍然保留
+        MappedPixelImage.load(b, cache, 1).close();
+        assertEquals(1, cacheFiles(cache).size());
+        try (MappedPixelImage image = MappedPixelImage.load(b, cache, 1)) {
+            assertSamePixels(ImageIO.read(b.toFile()), image);
+        }
+    }
+
+    @Test
+    void cacheLimitComesFromSystemProperty() throws IOException {
+        Path cache = dir.resolve("cache");
+        String previous = System.getProperty(MappedPixelImage.CACHE_LIMIT_PROPERTY);
+        System.setProperty(MappedPixelImage.CACHE_LIMIT_PROPERTY, "1");
+        try {
+            for (int i = 0; i < 3; i++) {
+                Path source = writePng(LsbRasterCodecTest.noise(20, 10, BufferedImage.TYPE_INT_RGB, 10 + i), i + ".png");
+                MappedPixelImage.load(source, cache).close();
+            }
+        } finally {
+            if (previous == null) {
+                System.clearProperty(MappedPixelImage.CACHE_LIMIT_PROPERTY);
+            } else {
+                System.setProperty(MappedPixelImage.CACHE_LIMIT_PROPERTY, previous);
+            }
+        }
+        assertEquals(1, cacheFiles(cache).size());
+    }
+
+    @Test
+    void evictRemovesOnlyStalePartFiles() throws IOException {
+        Path cache = Files.createDirectories(dir.resolve("cache"));
+        Path stale = Files.write(cache.resolve("old.pix.part"), new byte[16]);
+        Path fresh = Files.write(cache.resolve("new.pix.part"), new byte[16]);
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 2 * HOUR));
+
+        MappedPixelImage.evict(cache, Long.MAX_VALUE, null);
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(fresh));
+    }
+
+    @Test
+    void temporaryDecodeIsDeletedOnClose() throws IOException {
+        Path tmp = dir.resolve("tmp");
+        Path source = writePng(LsbRasterCodecTest.noise(20, 10, BufferedImage.TYPE_INT_ARGB, 9), "t.png");
+
+        try (MappedPixelImage image = MappedPixelImage.decodeTemporary(source, tmp)) {
+            assertSamePixels(ImageIO.read(source.toFile()), image);
+            assertEquals(1, listFiles(tmp).size());
+        }
+        assertEquals(List.of(), listFiles(tmp));
+    }
+
+    private static int pixel(int x, int y) {
+        return y * 0x01000193 ^ x * 0x9E3779B1;
+    }
+
+    private Path writePng(BufferedImage image, String name) throws IOException {
+        Path file = dir.resolve(name);
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+
+    private static void assertSamePixels(BufferedImage expected, MappedPixelImage actual) {
+        int width = expected.getWidth();
+        assertEquals(width, actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        int[] row = new int[width];
+        for (int y = 0; y < expected.getHeight(); y++) {
+            actual.readRow(y, row);
+            int[] expectedRow = expected.getRGB(0, y, width, 1, null, 0, width);
+            if (!actual.hasAlpha()) {
+                for (int x = 0; x < width; x++) {
+                    row[x] |= 0xFF000000;
+                }
+            }
+            assertArrayEquals(expectedRow, row, "y=" + y);
+        }
+    }
+
+    /**
+     * 直接改寫快取檔中的像素 (16 bytes 檔頭之後為 native byte order 的 int)
+     */
+    private static void overwritePixel(Path file, int index, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder()).putInt(value);
+            buffer.flip();
+            channel.write(buffer, 16 + (long) index * Integer.BYTES);
+        }
+    }
+
+    private static List<Path> cacheFiles(Path cache) throws IOException {
+        return listFiles(cache).stream().filter(p -> p.toString().endsWith(".pix")).collect(Collectors.toList());
+    }
+
+    private static List<Path> listFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.yienruuuuu;
+
+import jdk.incubator.vector.IntVector;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vector API 實作與純量實作必須逐 byte 相同，包含最後不滿一條向量的尾端與門檻邊界；
+ * 測試以 {@code --add-modules jdk.incubator.vector} 執行 (見 build.gradle)，所以 SIMD 路徑一定有被跑到
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class PixelKernelsTest {
+    private static final int LANES = IntVector.SPECIES_PREFERRED.length();
+    private static final int SENTINEL = 0x5A5A5A5A;
+
+    private final PixelKernels.Backend vector = new VectorPixelKernels();
+    private final PixelKernels.Backend scalar = new PixelKernels.Scalar();
+
+    /**
+     * 沒有載入模組時會默默退回純量版本，這裡確認測試環境真的用到 SIMD 實作
+     */
+    @Test
+    void vectorBackendIsActive() {
+        assertTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "測試必須以 --add-modules jdk.incubator.vector 執行");
+        assertEquals("VectorPixelKernels", PixelKernels.backendName());
+    }
+
+    @Test
+    void negateMatchesScalarForEveryTailLength() {
+        Random random = new Random(1);
+        for (int length : lengths()) {
+            int[] src = random.ints(length + 7).toArray();
+            int[] expected = new int[length + 9];
+            int[] actual = new int[length + 9];
+            Arrays.fill(expected, SENTINEL);
+            Arrays.fill(actual, SENTINEL);
+
+            scalar.negate(src, 7, expected, 2, length);
+            vector.negate(src, 7, actual, 2, length);
+
+            // 範圍外的元素也不能被寫到
+            assertArrayEquals(expected, actual, "length=" + length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(0, actual[2 + i] >>> 24, "alpha 必須清為 0，length=" + length);
+            }
+        }
+    }
+
+    @Test
+    void whiteMaskMatchesScalarForEveryTailLength() {
+        Random random = new Random(2);
+        for (int threshold : new int[]{0, 128, 219, 220, 221, 254, 255}) {
+            int limit = threshold * 3 + 2;
+            for (int length : lengths()) {
+                int[] src = new int[length + 3];
+                for (int i = 0; i < src.length; i++) {
+                    src[i] = random.nextBoolean() ? random.nextInt() : nearLimit(random, limit);
+                }
+                byte[] expected = new byte[length + 11];
+                byte[] actual = new byte[length + 11];
+                Arrays.fill(expected, (byte) 0x5A);
+                Arrays.fill(actual, (byte) 0x5A);
+
+                int expectedCount = scalar.whiteMask(src, 3, expected, 5, length, limit);
+                int actualCount = vector.whiteMask(src, 3, actual, 5, length, limit);
+
+                String label = "threshold=" + threshold + ", length=" + length;
+                assertEquals(expectedCount, actualCount, label);
+                assertArrayEquals(expected, actual, label);
+            }
+        }
+    }
+
+    /**
+     * whiteMask 的門檻是平均值 (整數除法) 嚴格大於 threshold，與原本 {@code (r+g+b)/3 > 220} 相同
+     */
+    @Test
+    void whiteMaskThresholdBoundary() {
+        int[] pixels = new int[3 * LANES + 3];
+        for (int i = 0; i < pixels.length; i++) {
+            // 總和 660 (平均 220)、662 (平均 220.67)、663 (平均 221) 輪流出現，alpha 不影響判斷
+            int[] sums = {660, 662, 663};
+            pixels[i] = (i * 37) << 24 | rgbWithSum(sums[i % 3]);
+        }
+        byte[] mask = new byte[pixels.length];
+
+        int count = PixelKernels.whiteMask(pixels, 0, mask, 0, pixels.length, 220);
+
+        for (int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            int average = (((p >> 16) & 0xFF) + ((p >> 8) & 0xFF) + (p & 0xFF)) / 3;
+            assertEquals(average > 220 ? 1 : 0, mask[i], "i=" + i);
+        }
+        assertEquals(pixels.length / 3, count);
+    }
+
+    /**
+     * 大圖會依列切段平行運算；結果要與原本逐像素 Color 取反的寫法相同 (輸出不透明，忽略輸入的 alpha)
+     */
+    @Test
+    void negativeMatchesOriginalLoop() {
+        BufferedImage argb = randomImage(1031, 1021, BufferedImage.TYPE_INT_ARGB, 3);
+        assertNegative(argb);
+        // 不是 int packed 的圖片走逐列讀取的路徑
+        assertNegative(randomImage(257, 131, BufferedImage.TYPE_3BYTE_BGR, 4));
+        // 子圖片的 raster 有位移與較寬的 stride
+        assertNegative(argb.getSubimage(13, 7, 333, 401));
+    }
+
+    @Test
+    void bandsCoverEveryRowOnce() {
+        for (int[] size : new int[][]{{1, 1}, {1024, 1024}, {5000, 300}, {100, 20_000}, {3, 500_000}}) {
+            AtomicIntegerArray rows = new AtomicIntegerArray(size[1]);
+            PixelKernels.forEachBand(size[0], size[1], (fromY, toY) -> {
+                for (int y = fromY; y < toY; y++) {
+                    rows.incrementAndGet(y);
+                }
+            });
+            for (int y = 0; y < size[1]; y++) {
+                assertEquals(1, rows.get(y), size[0] + "x" + size[1] + " y=" + y);
+            }
+        }
+    }
+
+    private static void assertNegative(BufferedImage source) {
+        BufferedImage negative = PixelKernels.negative(source);
+        assertEquals(BufferedImage.TYPE_INT_RGB, negative.getType());
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                int rgb = source.getRGB(x, y);
+                int expected = 0xFF000000 | (255 - ((rgb >> 16) & 0xFF)) << 16
+                        | (255 - ((rgb >> 8) & 0xFF)) << 8 | (255 - (rgb & 0xFF));
+                if (negative.getRGB(x, y) != expected) {
+                    assertEquals(Integer.toHexString(expected), Integer.toHexString(negative.getRGB(x, y)),
+                            "(" + x + ", " + y + ")");
+                }
+            }
+        }
+    }
+
+    /**
+     * 0 到三條向量再多一點的每一種長度，以及幾個較大的奇數長度
+     */
+    private static int[] lengths() {
+        int[] lengths = new int[3 * LANES + 2 + 3];
+        for (int i = 0; i <= 3 * LANES + 1; i++) {
+            lengths[i] = i;
+        }
+        lengths[3 * LANES + 2] = 1001;
+        lengths[3 * LANES + 3] = 4099;
+        lengths[3 * LANES + 4] = 64 * LANES + LANES - 1;
+        return lengths;
+    }
+
+    /**
+     * RGB 總和落在 limit 附近 (limit - 1 ~ limit + 2) 的像素
+     */
+    private static int nearLimit(Random random, int limit) {
+        int sum = Math.max(0, Math.min(765, limit - 1 + random.nextInt(4)));
+        return random.nextInt(256) << 24 | rgbWithSum(sum);
+    }
+
+    private static int rgbWithSum(int sum) {
+        int r = Math.min(255, sum);
+        int g = Math.min(255, sum - r);
+        int b = sum - r - g;
+        return r << 16 | g << 8 | b;
+    }
+
+    private static BufferedImage randomImage(int width, int height, int type, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = random.nextInt();
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+}
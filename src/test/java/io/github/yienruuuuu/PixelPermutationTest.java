@@ -0,0 +1,71 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link PixelPermutation} 必須是 [0, size) 上的一對一對應，圖片大小通常不是 2 的次方
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class PixelPermutationTest {
+    private static final byte[] KEY = LsbOptions.deriveKey("密語");
+
+    @Test
+    void isBijectionForAwkwardSizes() {
+        long[] sizes = {1, 2, 3, 5, 7, 100, 257, 1000, 4095, 4097, 65537, 640 * 479, 1_000_003};
+        for (long size : sizes) {
+            PixelPermutation permutation = new PixelPermutation(size, KEY);
+            BitSet seen = new BitSet((int) size);
+            for (int i = 0; i < size; i++) {
+                int mapped = permutation.map(i);
+                assertTrue(mapped >= 0 && mapped < size, "size=" + size + " 映射超出範圍: " + mapped);
+                assertFalse(seen.get(mapped), "size=" + size + " 重複映射到 " + mapped);
+                seen.set(mapped);
+            }
+            assertEquals(size, seen.cardinality(), "size=" + size);
+        }
+    }
+
+    @Test
+    void sameKeyGivesSameOrder() {
+        PixelPermutation a = new PixelPermutation(12_345, KEY);
+        PixelPermutation b = new PixelPermutation(12_345, LsbOptions.deriveKey("密語"));
+        for (int i = 0; i < 12_345; i++) {
+            assertEquals(a.map(i), b.map(i), "i=" + i);
+        }
+    }
+
+    @Test
+    void differentKeysGiveDifferentOrders() {
+        PixelPermutation a = new PixelPermutation(12_345, KEY);
+        PixelPermutation b = new PixelPermutation(12_345, LsbOptions.deriveKey("另一個密語"));
+        int same = 0;
+        for (int i = 0; i < 12_345; i++) {
+            if (a.map(i) == b.map(i)) {
+                same++;
+            }
+        }
+        // 兩個獨立的亂數排列平均只有 1 個位置相同
+        assertTrue(same < 20, "相同位置太多: " + same);
+    }
+
+    @Test
+    void scattersTheFirstIndices() {
+        // 訊息開頭不應該集中在圖片左上角
+        PixelPermutation permutation = new PixelPermutation(1_000_000, KEY);
+        int inFirstRows = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (permutation.map(i) < 10_000) {
+                inFirstRows++;
+            }
+        }
+        assertTrue(inFirstRows < 50, "前 1000 個位置有 " + inFirstRows + " 個落在前 1% 的像素");
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link PngEncoder} 的輸出以 ImageIO 讀回後必須與原圖逐像素相同
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class PngEncoderTest {
+
+    @Test
+    void everyFilterMatchesImageIo() throws IOException {
+        BufferedImage image = gradientWithNoise(173, 91, BufferedImage.TYPE_INT_RGB, 1);
+        for (PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+            assertSamePixels(image, encode(new PngEncoder(6, filter, 1), image), filter.name());
+        }
+    }
+
+    @Test
+    void alphaChannelIsPreserved() throws IOException {
+        BufferedImage image = gradientWithNoise(64, 64, BufferedImage.TYPE_INT_ARGB, 2);
+        BufferedImage decoded = encode(PngEncoder.DEFAULT, image);
+
+        assertEquals(BufferedImage.TYPE_4BYTE_ABGR, decoded.getType());
+        assertSamePixels(image, decoded, "ARGB");
+    }
+
+    /**
+     * 高到切成多段的圖，平行壓縮 (各段以前一段結尾為字典) 與單執行緒依序壓縮都要能讀回
+     */
+    @Test
+    void multiSegmentOutputMatchesForAnyParallelism() throws IOException {
+        BufferedImage image = gradientWithNoise(211, 2000, BufferedImage.TYPE_INT_RGB, 3);
+        for (int parallelism : new int[]{1, 2, 8}) {
+            for (int level : new int[]{0, 6}) {
+                PngEncoder encoder = new PngEncoder(level, PngEncoder.Filter.ADAPTIVE, parallelism);
+                assertSamePixels(image, encode(encoder, image), "parallelism=" + parallelism + ", level=" + level);
+            }
+        }
+    }
+
+    @Test
+    void singlePixelImage() throws IOException {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0x80123456);
+
+        assertSamePixels(image, encode(PngEncoder.DEFAULT, image), "1x1");
+    }
+
+    private static BufferedImage encode(PngEncoder encoder, BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.write(image, Channels.newChannel(out));
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual, String label) {
+        assertEquals(expected.getWidth(), actual.getWidth(), label);
+        assertEquals(expected.getHeight(), actual.getHeight(), label);
+        int width = expected.getWidth();
+        int height = expected.getHeight();
+        assertArrayEquals(expected.getRGB(0, 0, width, height, null, 0, width),
+                actual.getRGB(0, 0, width, height, null, 0, width), label);
+    }
+
+    /**
+     * 平滑漸層讓各種濾波都有作用，再加上少量雜訊避免整段被壓成重複字串
+     */
+    private static BufferedImage gradientWithNoise(int width, int height, int type, long seed) {
+        Random random = new Random(seed);
+        boolean alpha = type == BufferedImage.TYPE_INT_ARGB;
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(8)) & 0xFF;
+                int g = (y * 255 / height) & 0xFF;
+                int b = (x + y) & 0xFF;
+                int a = alpha ? random.nextInt(256) : 0xFF;
+                image.setRGB(x, y, a << 24 | r << 16 | g << 8 | b);
+            }
+        }
+        return image;
+    }
+}
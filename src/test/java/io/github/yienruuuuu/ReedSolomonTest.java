@@ -0,0 +1,110 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RS(255,223)：每個區塊最多更正 16 個錯誤的 byte，超過時必須回報失敗而不是默默改錯
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class ReedSolomonTest {
+    private static final int MAX_ERRORS = ReedSolomon.PARITY / 2;
+
+    @Test
+    void correctsUpToSixteenErrorsInAFullBlock() {
+        Random random = new Random(1);
+        for (int trial = 0; trial < 50; trial++) {
+            byte[] data = randomData(random, ReedSolomon.BLOCK_DATA);
+            for (int errors = 0; errors <= MAX_ERRORS; errors++) {
+                byte[] block = ReedSolomon.encode(data);
+                corrupt(block, errors, random);
+
+                assertTrue(ReedSolomon.decode(block, block.length), "errors=" + errors);
+                assertArrayEquals(data, Arrays.copyOf(block, data.length), "errors=" + errors);
+            }
+        }
+    }
+
+    /**
+     * 最後一個區塊通常比 223 bytes 短 (shortened code)，錯誤也可能落在同位元上
+     */
+    @Test
+    void correctsSixteenErrorsInAShortBlock() {
+        Random random = new Random(2);
+        for (int length : new int[]{1, 17, 100, 222}) {
+            byte[] data = randomData(random, length);
+            byte[] block = ReedSolomon.encode(data);
+            assertEquals(length + ReedSolomon.PARITY, block.length);
+
+            corrupt(block, MAX_ERRORS, random);
+            assertTrue(ReedSolomon.decode(block, block.length), "length=" + length);
+            assertArrayEquals(data, Arrays.copyOf(block, length), "length=" + length);
+        }
+    }
+
+    @Test
+    void reportsFailureAtSeventeenErrors() {
+        Random random = new Random(3);
+        for (int trial = 0; trial < 200; trial++) {
+            byte[] block = ReedSolomon.encode(randomData(random, ReedSolomon.BLOCK_DATA));
+            corrupt(block, MAX_ERRORS + 1, random);
+
+            assertFalse(ReedSolomon.decode(block, block.length), "trial=" + trial);
+        }
+    }
+
+    @Test
+    void encodesEachBlockIndependently() {
+        Random random = new Random(4);
+        byte[] data = randomData(random, ReedSolomon.BLOCK_DATA * 2 + 50);
+        byte[] encoded = ReedSolomon.encode(data);
+        assertEquals(ReedSolomon.encodedLength(data.length), encoded.length);
+        assertEquals(data.length, ReedSolomon.maxDataLength(encoded.length));
+
+        // 每個區塊各自更正 16 個錯誤
+        int offset = 0;
+        for (int pos = 0; pos < data.length; pos += ReedSolomon.BLOCK_DATA) {
+            int length = Math.min(ReedSolomon.BLOCK_DATA, data.length - pos) + ReedSolomon.PARITY;
+            byte[] block = Arrays.copyOfRange(encoded, offset, offset + length);
+            corrupt(block, MAX_ERRORS, random);
+            assertTrue(ReedSolomon.decode(block, length));
+            assertArrayEquals(Arrays.copyOfRange(data, pos, pos + length - ReedSolomon.PARITY),
+                    Arrays.copyOf(block, length - ReedSolomon.PARITY));
+            offset += length;
+        }
+    }
+
+    @Test
+    void capacityHelpersAreConsistent() {
+        for (long encoded = 0; encoded < 2000; encoded++) {
+            long data = ReedSolomon.maxDataLength(encoded);
+            assertTrue(ReedSolomon.encodedLength(data) <= encoded, "encoded=" + encoded);
+            assertTrue(ReedSolomon.encodedLength(data + 1) > encoded, "encoded=" + encoded);
+        }
+    }
+
+    private static byte[] randomData(Random random, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    /**
+     * 在不同位置各改壞一個 byte (保證值真的改變)
+     */
+    private static void corrupt(byte[] block, int errors, Random random) {
+        int[] positions = random.ints(0, block.length).distinct().limit(errors).toArray();
+        for (int position : positions) {
+            block[position] ^= (byte) (1 + random.nextInt(255));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RegionPlacer} 的每一個結果都要是逐點窮舉下、不和前面結果重疊的位置中白像素最多的；
+ * 同分時挑中的位置可以不同，所以逐步以引擎自己的前幾個結果為條件比對窮舉的最大值
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class RegionPlacerTest {
+    private static final int THRESHOLD = WhiteRegionFinderTest.THRESHOLD;
+
+    @Test
+    void topKMatchesGreedyBruteForce() {
+        for (long seed = 0; seed < 6; seed++) {
+            BufferedImage image = WhiteRegionFinderTest.blobs(97 + (int) seed * 13, 73, 5, seed);
+            int[][] sums = WhiteRegionFinderTest.whiteSums(image, THRESHOLD);
+            for (int cellSize : new int[]{1, 3, 8}) {
+                RegionPlacer.Index index = new RegionPlacer(THRESHOLD, cellSize).index(image);
+                assertGreedy(sums, index.top(17, 9, 6), 17, 9, 6, "seed=" + seed + " cell=" + cellSize);
+            }
+        }
+    }
+
+    /**
+     * 一次查詢多種大小的結果與分別查詢相同，也都符合窮舉
+     */
+    @Test
+    void multiSizeMatchesSeparateQueries() {
+        BufferedImage image = WhiteRegionFinderTest.blobs(160, 120, 8, 42);
+        int[][] sums = WhiteRegionFinderTest.whiteSums(image, THRESHOLD);
+        List<Dimension> sizes = List.of(new Dimension(40, 10), new Dimension(7, 31), new Dimension(1, 1),
+                new Dimension(160, 120), new Dimension(161, 5));
+        RegionPlacer placer = new RegionPlacer(THRESHOLD);
+
+        Map<Dimension, List<RegionPlacer.Placement>> results = placer.place(image, sizes, 4);
+
+        assertEquals(sizes, List.copyOf(results.keySet()));
+        RegionPlacer.Index index = placer.index(image);
+        for (Dimension size : sizes) {
+            List<RegionPlacer.Placement> placements = results.get(size);
+            assertSamePlacements(index.top(size.width, size.height, 4), placements);
+            assertGreedy(sums, placements, size.width, size.height, 4, size.toString());
+        }
+        assertTrue(results.get(new Dimension(161, 5)).isEmpty());
+        assertEquals(1, results.get(new Dimension(160, 120)).size());
+    }
+
+    @Test
+    void placeTextsUsesTheWatermarkThreshold() {
+        BufferedImage image = WhiteRegionFinderTest.blobs(240, 160, 6, 9);
+        List<Dimension> sizes = List.of(new Dimension(InvertSteganography.REGION_WIDTH, InvertSteganography.REGION_HEIGHT),
+                new Dimension(60, 20));
+
+        Map<Dimension, List<RegionPlacer.Placement>> results = InvertSteganography.placeTexts(image, sizes, 3);
+
+        int[][] sums = WhiteRegionFinderTest.whiteSums(image, THRESHOLD);
+        for (Dimension size : sizes) {
+            assertGreedy(sums, results.get(size), size.width, size.height, 3, size.toString());
+        }
+    }
+
+    /**
+     * 第一個結果的白像素數與只找單一位置的 {@link WhiteRegionFinder} 相同
+     */
+    @Test
+    void bestAgreesWithWhiteRegionFinder() {
+        for (long seed = 10; seed < 16; seed++) {
+            BufferedImage image = WhiteRegionFinderTest.blobs(211, 90, 7, seed);
+            RegionPlacer.Placement best = new RegionPlacer(THRESHOLD).index(image).top(33, 12, 1).get(0);
+            WhiteRegionFinder.Region region = new WhiteRegionFinder(33, 12, THRESHOLD).find(PixelRowSource.of(image));
+            assertEquals(region.getWhiteCount(), best.getWhiteCount(), "seed=" + seed);
+        }
+    }
+
+    /**
+     * 全白時所有位置同分，仍然要排出互不重疊的 k 個位置，不能因為上界打平而重複或漏掉
+     */
+    @Test
+    void uniformImageStillFillsTopK() {
+        BufferedImage image = WhiteRegionFinderTest.filled(100, 64, 0xFFFFFF);
+        int[][] sums = WhiteRegionFinderTest.whiteSums(image, THRESHOLD);
+        List<RegionPlacer.Placement> placements = new RegionPlacer(THRESHOLD).index(image).top(20, 16, 100);
+
+        assertGreedy(sums, placements, 20, 16, 100, "uniform");
+        // 100x64 最多排得下 5 × 4 個互不重疊的 20x16 區域，貪婪挑選的位置不一定對齊，所以只確定有排滿到放不下為止
+        assertTrue(placements.size() >= 6 && placements.size() <= 20, "數量 " + placements.size());
+        assertEquals(0, placements.get(0).getX());
+        assertEquals(0, placements.get(0).getY());
+    }
+
+    /**
+     * 並行建立索引 (多個 band) 與單執行緒的結果相同
+     */
+    @Test
+    void parallelIndexMatchesSequential() {
+        BufferedImage image = WhiteRegionFinderTest.blobs(80, 900, 15, 7);
+        RegionPlacer placer = new RegionPlacer(THRESHOLD);
+        List<RegionPlacer.Placement> sequential = placer.index(PixelRowSource.of(image), 1).top(25, 14, 8);
+        List<RegionPlacer.Placement> parallel = placer.index(PixelRowSource.of(image), 4).top(25, 14, 8);
+
+        assertSamePlacements(sequential, parallel);
+        assertGreedy(WhiteRegionFinderTest.whiteSums(image, THRESHOLD), parallel, 25, 14, 8, "parallel");
+    }
+
+    @Test
+    void countMatchesBruteForce() {
+        BufferedImage image = WhiteRegionFinderTest.blobs(130, 40, 4, 3);
+        int[][] sums = WhiteRegionFinderTest.whiteSums(image, THRESHOLD);
+        RegionPlacer.Index index = new RegionPlacer(THRESHOLD).index(image);
+        for (int x = 0; x < 130; x += 7) {
+            for (int w = 1; x + w <= 130; w += 11) {
+                assertEquals(WhiteRegionFinderTest.count(sums, x, 3, w, 29), index.count(x, 3, w, 29), x + "+" + w);
+            }
+        }
+    }
+
+    @Test
+    void rejectsInvalidSizes() {
+        RegionPlacer.Index index = new RegionPlacer(THRESHOLD).index(WhiteRegionFinderTest.filled(10, 10, 0));
+
+        assertThrows(IllegalArgumentException.class, () -> index.top(0, 5, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RegionPlacer(THRESHOLD, 0));
+        assertTrue(index.top(5, 5, 0).isEmpty());
+    }
+
+    /**
+     * 逐一檢查：白像素數正確、不和前面的結果重疊、是窮舉下不重疊位置中的最大值；
+     * 結果少於 k 個時，窮舉也必須找不到任何不重疊的位置
+     */
+    private static void assertGreedy(int[][] sums, List<RegionPlacer.Placement> placements,
+                                     int regionWidth, int regionHeight, int k, String label) {
+        int width = sums[0].length - 1;
+        int height = sums.length - 1;
+        assertTrue(placements.size() <= k, label);
+        for (int i = 0; i <= placements.size(); i++) {
+            List<RegionPlacer.Placement> chosen = placements.subList(0, i);
+            int best = -1;
+            for (int y = 0; y + regionHeight <= height; y++) {
+                for (int x = 0; x + regionWidth <= width; x++) {
+                    if (!overlapsAny(chosen, x, y, regionWidth, regionHeight)) {
+                        best = Math.max(best, WhiteRegionFinderTest.count(sums, x, y, regionWidth, regionHeight));
+                    }
+                }
+            }
+            if (i == placements.size()) {
+                assertTrue(i == k || best < 0, label + " 還有可放的位置卻只回傳 " + i + " 個");
+                break;
+            }
+            RegionPlacer.Placement p = placements.get(i);
+            String at = label + " #" + i + " " + p;
+            assertEquals(regionWidth, p.getWidth(), at);
+            assertEquals(regionHeight, p.getHeight(), at);
+            assertFalse(overlapsAny(chosen, p.getX(), p.getY(), regionWidth, regionHeight), at);
+            assertEquals(WhiteRegionFinderTest.count(sums, p.getX(), p.getY(), regionWidth, regionHeight),
+                    p.getWhiteCount(), at);
+            assertEquals(best, p.getWhiteCount(), at);
+        }
+    }
+
+    private static boolean overlapsAny(List<RegionPlacer.Placement> placements, int x, int y, int w, int h) {
+        for (RegionPlacer.Placement p : placements) {
+            if (p.overlaps(x, y, w, h)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertSamePlacements(List<RegionPlacer.Placement> expected, List<RegionPlacer.Placement> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 命令列的藏入 / 取出、stdin 批次模式的 OK / ERR 行，以及「沒有訊息」與「處理錯誤」的結束碼
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class StegoCliTest {
+    private static final String MESSAGE = "命令列的訊息";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void encodeExtractRoundTrip() throws IOException {
+        Path source = writePng(LsbRasterCodecTest.noise(80, 60, BufferedImage.TYPE_INT_RGB, 1), "source.png");
+        String[][] modes = {{}, {"--bpc", "2", "--alpha", "--compress", "--ecc"}, {"--key", "密語"}};
+        for (String[] mode : modes) {
+            Path target = dir.resolve("stego.png");
+            Result encoded = run(concat(new String[]{"encode", source.toString(), target.toString(), MESSAGE}, mode));
+            assertEquals(0, encoded.status, encoded.err);
+
+            Result extracted = run(concat(new String[]{"extract", target.toString()}, mode));
+            assertEquals(0, extracted.status, extracted.err);
+            assertEquals(MESSAGE + System.lineSeparator(), extracted.out);
+        }
+    }
+
+    /**
+     * {@code -} 代表 stdin / stdout，可以串接成 pipeline
+     */
+    @Test
+    void encodeAndExtractThroughPipes() throws IOException {
+        Path source = writePng(LsbRasterCodecTest.noise(80, 60, BufferedImage.TYPE_INT_ARGB, 2), "source.png");
+
+        Result encoded = run(new ByteArrayInputStream(Files.readAllBytes(source)), "encode", "-", "-", MESSAGE);
+        assertEquals(0, encoded.status, encoded.err);
+        BufferedImage stego = ImageIO.read(new ByteArrayInputStream(encoded.bytes));
+        assertEquals(MESSAGE, LsbTool.extractTextFromImageLSB(stego));
+
+        Result extracted = run(new ByteArrayInputStream(encoded.bytes), "extract", "-");
+        assertEquals(0, extracted.status, extracted.err);
+        assertEquals(MESSAGE + System.lineSeparator(), extracted.out);
+    }
+
+    @Test
+    void exitCodesSeparateNotFoundFromErrors() throws IOException {
+        Path plain = writePng(LsbRasterCodecTest.noise(8, 8, BufferedImage.TYPE_INT_RGB, 3), "plain.png");
+        Result notFound = run("extract", plain.toString());
+        assertEquals(1, notFound.status, notFound.err);
+        assertEquals("", notFound.out);
+
+        // 檔頭合法但影像資料在訊息所在的列之前就被截斷，以及 PNG 簽章之後全是垃圾：都是處理錯誤，不能當成沒有訊息
+        Path stego = dir.resolve("stego.png");
+        assertEquals(0, run("encode", writePng(LsbRasterCodecTest.noise(80, 60, BufferedImage.TYPE_INT_RGB, 4),
+                "source.png").toString(), stego.toString(), MESSAGE).status);
+        byte[] png = Files.readAllBytes(stego);
+        Path truncated = Files.write(dir.resolve("truncated.png"), Arrays.copyOf(png, 60));
+        Path garbage = dir.resolve("garbage.png");
+        byte[] bytes = Arrays.copyOf(png, 200);
+        Arrays.fill(bytes, 8, bytes.length, (byte) 0x7F);
+        Files.write(garbage, bytes);
+        for (Path corrupt : new Path[]{truncated, garbage, dir.resolve("missing.png")}) {
+            Result result = run("extract", corrupt.toString());
+            assertEquals(2, result.status, corrupt + ": " + result.err);
+            assertTrue(result.err.startsWith("⚠️ "), result.err);
+        }
+        Result fromStdin = run(new ByteArrayInputStream(Arrays.copyOf(png, 60)), "extract", "-");
+        assertEquals(2, fromStdin.status, fromStdin.err);
+
+        assertEquals(2, run().status);
+        assertEquals(2, run("extract").status);
+        assertEquals(2, run("unknown", "x").status);
+        assertEquals(2, run("encode", "a", "b", "c", "--bpc", "9").status);
+        assertEquals(2, run("extract", "a", "--key").status);
+    }
+
+    @Test
+    void serveAnswersEveryLine() throws IOException {
+        Path source = writePng(LsbRasterCodecTest.noise(80, 60, BufferedImage.TYPE_INT_RGB, 5), "source.png");
+        Path plain = writePng(LsbRasterCodecTest.noise(8, 8, BufferedImage.TYPE_INT_RGB, 3), "plain.png");
+        Path stego = dir.resolve("stego.png");
+        // 一行一個指令，訊息本身不能有換行，但可以有 TAB 與反斜線
+        String tabbed = "第一欄\t第二欄\\反斜線";
+        String input = String.join("\n",
+                "# 註解與空白行不輸出結果",
+                "encode\t" + source + "\t" + stego + "\t" + tabbed,
+                "",
+                "extract\t" + stego,
+                "extract\t" + plain,
+                "extract\t" + dir.resolve("missing.png"),
+                "encode\t" + source + "\t" + stego,
+                "unknown\tx");
+
+        Result result = run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), "--stdin");
+
+        List<String> lines = result.out.lines().collect(Collectors.toList());
+        assertEquals(6, lines.size(), result.out);
+        assertEquals("OK\t" + stego, lines.get(0));
+        assertEquals("OK\t" + StegoCli.escape(tabbed), lines.get(1));
+        assertEquals("OK\t第一欄\\t第二欄\\\\反斜線", lines.get(1));
+        assertEquals("ERR\t圖片中沒有隱藏訊息", lines.get(2));
+        assertTrue(lines.get(3).startsWith("ERR\t找不到檔案"), lines.get(3));
+        assertTrue(lines.get(4).startsWith("ERR\t格式應為 encode"), lines.get(4));
+        assertEquals("ERR\t未知的指令：unknown", lines.get(5));
+        // 每一行都只有兩欄
+        for (String line : lines) {
+            assertEquals(2, line.split("\t", -1).length, line);
+        }
+        assertEquals(2, result.status);
+        assertTrue(result.err.contains("4 筆處理失敗"), result.err);
+
+        Result ok = run(new ByteArrayInputStream(("extract\t" + stego + "\n").getBytes(StandardCharsets.UTF_8)), "--stdin");
+        assertEquals(0, ok.status, ok.err);
+    }
+
+    @Test
+    void escapesBackslashTabAndLineBreaks() {
+        assertEquals("", StegoCli.escape(""));
+        assertEquals("純文字", StegoCli.escape("純文字"));
+        assertEquals("a\\tb\\nc\\rd\\\\e", StegoCli.escape("a\tb\nc\rd\\e"));
+        // 已經跳脫過的字串再跳脫一次不會和原字串混淆
+        assertEquals("\\\\t", StegoCli.escape("\\t"));
+    }
+
+    @Test
+    void placeListsRegionsPerSize() throws IOException {
+        BufferedImage image = WhiteRegionFinderTest.blobs(160, 120, 6, 11);
+        Path source = writePng(image, "blobs.png");
+
+        Result result = run("place", source.toString(), "40x10", "7x31", "161x5", "--top", "3");
+
+        assertEquals(0, result.status, result.err);
+        List<String> lines = result.out.lines().collect(Collectors.toList());
+        assertEquals(3, lines.size(), result.out);
+        String[] sizes = {"40x10", "7x31"};
+        RegionPlacer.Index index = new RegionPlacer(InvertSteganography.WHITE_THRESHOLD).index(image);
+        for (int i = 0; i < sizes.length; i++) {
+            String[] parts = lines.get(i).split(" ");
+            assertEquals(sizes[i], parts[0]);
+            int w = Integer.parseInt(sizes[i].substring(0, sizes[i].indexOf('x')));
+            int h = Integer.parseInt(sizes[i].substring(sizes[i].indexOf('x') + 1));
+            List<RegionPlacer.Placement> expected = index.top(w, h, 3);
+            assertEquals(expected.size() + 1, parts.length, lines.get(i));
+            for (int j = 0; j < expected.size(); j++) {
+                RegionPlacer.Placement p = expected.get(j);
+                assertEquals(p.getX() + "," + p.getY() + "," + p.getWhiteCount(), parts[j + 1]);
+            }
+        }
+        // 比圖片大的區域放不下
+        assertEquals("161x5", lines.get(2));
+
+        Result served = run(new ByteArrayInputStream(("place\t" + source + "\t40x10\t161x5\n")
+                .getBytes(StandardCharsets.UTF_8)), "--stdin", "--top", "3");
+        assertEquals("OK\t" + lines.get(0) + "; 161x5" + System.lineSeparator(), served.out);
+
+        assertEquals(2, run("place", source.toString()).status);
+        assertEquals(2, run("place", source.toString(), "40x0").status);
+        assertEquals(2, run("place", source.toString(), "40*10").status);
+        assertEquals(2, run("place", source.toString(), "40x10", "--top", "0").status);
+    }
+
+    private Path writePng(BufferedImage image, String name) throws IOException {
+        Path file = dir.resolve(name);
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+
+    private static String[] concat(String[] a, String[] b) {
+        String[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static Result run(String... args) {
+        return run(new ByteArrayInputStream(new byte[0]), args);
+    }
+
+    private static Result run(InputStream in, String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream outStream = new PrintStream(out, false, StandardCharsets.UTF_8);
+        PrintStream errStream = new PrintStream(err, true, StandardCharsets.UTF_8);
+        int status = StegoCli.run(args, in, outStream, errStream);
+        outStream.flush();
+        return new Result(status, out.toByteArray(), err.toString(StandardCharsets.UTF_8));
+    }
+
+    private static final class Result {
+        private final int status;
+        private final byte[] bytes;
+        private final String out;
+        private final String err;
+
+        private Result(int status, byte[] bytes, String err) {
+            this.status = status;
+            this.bytes = bytes;
+            this.out = new String(bytes, StandardCharsets.UTF_8);
+            this.err = err;
+        }
+    }
+}
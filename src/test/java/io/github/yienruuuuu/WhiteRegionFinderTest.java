@@ -0,0 +1,194 @@
+package io.github.yienruuuuu;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link WhiteRegionFinder} 必須與逐點窮舉的結果完全相同，同分時和舊版一樣取 (y, x) 順序的第一個位置
+ *
+ * @author Eric.Lee
+ * Date: 2025/6/10
+ */
+class WhiteRegionFinderTest {
+    /**
+     * 與 InvertSteganography 判斷「接近白色」的門檻相同
+     */
+    static final int THRESHOLD = 220;
+
+    @Test
+    void matchesBruteForce() {
+        int[][] cases = {
+                // 寬, 高, 區域寬, 區域高
+                {97, 73, 13, 7},
+                {64, 64, 64, 64},
+                {150, 40, 1, 1},
+                {31, 200, 30, 17},
+                {200, 50, 200, 1},
+        };
+        for (int i = 0; i < cases.length; i++) {
+            int[] c = cases[i];
+            BufferedImage image = blobs(c[0], c[1], 6, i);
+            assertSameAsBruteForce(image, c[2], c[3], 1);
+        }
+    }
+
+    /**
+     * 高度足以切成多個 band 時，並行結果要與單執行緒相同
+     */
+    @Test
+    void parallelBandsMatchBruteForce() {
+        for (long seed = 0; seed < 4; seed++) {
+            BufferedImage image = blobs(60, 1300, 12, 100 + seed);
+            assertSameAsBruteForce(image, 11, 9, 4);
+            assertSameAsBruteForce(image, 11, 9, 1);
+        }
+    }
+
+    @Test
+    void tiesPreferTopLeft() {
+        // 全白時每個位置同分，取 (0, 0)
+        BufferedImage white = filled(50, 40, 0xFFFFFF);
+        assertRegion(0, 0, 20 * 10, new WhiteRegionFinder(20, 10, THRESHOLD).find(PixelRowSource.of(white), 1));
+
+        // 兩塊一樣大的白色區域在同一列時取左邊，不同列時取上面 (即使下面那塊較靠左)
+        BufferedImage sameRow = filled(100, 30, 0);
+        fill(sameRow, 60, 5, 10, 10, 0xFFFFFF);
+        fill(sameRow, 10, 5, 10, 10, 0xFFFFFF);
+        assertRegion(10, 5, 100, new WhiteRegionFinder(10, 10, THRESHOLD).find(PixelRowSource.of(sameRow), 1));
+
+        BufferedImage stacked = filled(100, 30, 0);
+        fill(stacked, 80, 3, 10, 10, 0xFFFFFF);
+        fill(stacked, 0, 15, 10, 10, 0xFFFFFF);
+        assertRegion(80, 3, 100, new WhiteRegionFinder(10, 10, THRESHOLD).find(PixelRowSource.of(stacked), 1));
+    }
+
+    /**
+     * 同分的區域落在不同 band 時，合併後仍然取最上面的
+     */
+    @Test
+    void tiesAcrossBandsPreferTopLeft() {
+        BufferedImage image = filled(40, 1200, 0);
+        fill(image, 30, 1100, 10, 10, 0xFFFFFF);
+        fill(image, 20, 700, 10, 10, 0xFFFFFF);
+        fill(image, 5, 300, 10, 10, 0xFFFFFF);
+        for (int parallelism : new int[]{1, 2, 4}) {
+            WhiteRegionFinder.Region region = new WhiteRegionFinder(10, 10, THRESHOLD)
+                    .find(PixelRowSource.of(image), parallelism);
+            assertRegion(5, 300, 100, region);
+        }
+    }
+
+    /**
+     * 白色的判斷是 RGB 平均值嚴格大於門檻
+     */
+    @Test
+    void thresholdIsStrict() {
+        BufferedImage image = filled(20, 10, 0);
+        // 平均值剛好是 220 (總和 660)，不算白色
+        fill(image, 0, 0, 10, 10, 220 << 16 | 220 << 8 | 220);
+        // 總和 663，平均 221
+        fill(image, 10, 0, 10, 10, 221 << 16 | 221 << 8 | 221);
+        assertRegion(10, 0, 100, new WhiteRegionFinder(10, 10, THRESHOLD).find(PixelRowSource.of(image), 1));
+    }
+
+    @Test
+    void noWhiteOrTooSmallImage() {
+        BufferedImage black = filled(30, 30, 0);
+        assertRegion(0, 0, 0, new WhiteRegionFinder(10, 10, THRESHOLD).find(PixelRowSource.of(black), 1));
+
+        BufferedImage white = filled(30, 30, 0xFFFFFF);
+        assertRegion(0, 0, 0, new WhiteRegionFinder(31, 10, THRESHOLD).find(PixelRowSource.of(white), 1));
+    }
+
+    private static void assertSameAsBruteForce(BufferedImage image, int regionWidth, int regionHeight, int parallelism) {
+        int[][] sums = whiteSums(image, THRESHOLD);
+        int bestX = 0, bestY = 0, best = 0;
+        for (int y = 0; y + regionHeight <= image.getHeight(); y++) {
+            for (int x = 0; x + regionWidth <= image.getWidth(); x++) {
+                int count = count(sums, x, y, regionWidth, regionHeight);
+                if (count > best) {
+                    best = count;
+                    bestX = x;
+                    bestY = y;
+                }
+            }
+        }
+        WhiteRegionFinder.Region region = new WhiteRegionFinder(regionWidth, regionHeight, THRESHOLD)
+                .find(PixelRowSource.of(image), parallelism);
+        assertRegion(bestX, bestY, best, region);
+    }
+
+    private static void assertRegion(int x, int y, int whiteCount, WhiteRegionFinder.Region region) {
+        String label = "(" + region.getX() + ", " + region.getY() + ") " + region.getWhiteCount();
+        assertEquals(x, region.getX(), label);
+        assertEquals(y, region.getY(), label);
+        assertEquals(whiteCount, region.getWhiteCount(), label);
+    }
+
+    /**
+     * 以最直接的方式 (RGB 平均值 > 門檻) 建立白像素積分圖，大小 (height + 1) × (width + 1)
+     */
+    static int[][] whiteSums(BufferedImage image, int threshold) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[][] sums = new int[height + 1][width + 1];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(x, y);
+                int average = (((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3;
+                sums[y + 1][x + 1] = sums[y][x + 1] + sums[y + 1][x] - sums[y][x] + (average > threshold ? 1 : 0);
+            }
+        }
+        return sums;
+    }
+
+    static int count(int[][] sums, int x, int y, int w, int h) {
+        return sums[y + h][x + w] - sums[y][x + w] - sums[y + h][x] + sums[y][x];
+    }
+
+    /**
+     * 深色雜訊底圖上散佈一些接近門檻的像素，再畫上數塊帶有破洞的白色矩形
+     */
+    static BufferedImage blobs(int width, int height, int count, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = random.nextInt(10) == 0 ? 218 + random.nextInt(6) : random.nextInt(200);
+                image.setRGB(x, y, v << 16 | v << 8 | v);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int w = 1 + random.nextInt(Math.max(1, width / 2));
+            int h = 1 + random.nextInt(Math.max(1, height / 3));
+            int x0 = random.nextInt(width - w + 1);
+            int y0 = random.nextInt(height - h + 1);
+            for (int y = y0; y < y0 + h; y++) {
+                for (int x = x0; x < x0 + w; x++) {
+                    if (random.nextInt(8) != 0) {
+                        image.setRGB(x, y, 0xF0F0F0);
+                    }
+                }
+            }
+        }
+        return image;
+    }
+
+    static BufferedImage filled(int width, int height, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        fill(image, 0, 0, width, height, rgb);
+        return image;
+    }
+
+    static void fill(BufferedImage image, int x0, int y0, int w, int h, int rgb) {
+        for (int y = y0; y < y0 + h; y++) {
+            for (int x = x0; x < x0 + w; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+    }
+}